@@ -0,0 +1,100 @@
+package com.mihirsoni.radical.bookworm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.BookworkExternalApiApplication;
+import com.mihirsoni.radical.bookworm.models.BestsellerIndex;
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import com.mihirsoni.radical.bookworm.service.BestsellerParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Merge of the recorded full-overview with the books stored in an in-memory H2 database, as done
+ * whenever the bestseller index is rebuilt: one lookup of the stored versions of all bestsellers
+ * followed by the build of the index. Every fourth bestseller is stored as a favourite
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BestsellerMergeBenchmark {
+  private ConfigurableApplicationContext context;
+  private BookwormRepository repository;
+  private BestsellerSnapshot snapshot;
+  private List<String> isbns;
+
+  @Setup
+  public void setUp() throws IOException {
+    context =
+        new SpringApplicationBuilder(BookworkExternalApiApplication.class)
+            .web(WebApplicationType.NONE)
+            .run(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--BOOKWORM_API_KEY=benchmark",
+                "--bookworm.dev-url=http://localhost:8080",
+                "--bookworm.prod-url=http://localhost",
+                "--bookworm.nyt.base-url=http://localhost:9",
+                "--bookworm.nyt.refresh-interval=PT24H",
+                "--bookworm.nyt.snapshot-file=target/benchmark-snapshot.bin",
+                "--bookworm.cache.statistics-interval=PT24H",
+                "--logging.level.root=WARN");
+    repository = context.getBean(BookwormRepository.class);
+
+    BestsellerParser parser = new BestsellerParser(new ObjectMapper());
+    snapshot =
+        new BestsellerSnapshot(
+            parser.parseFullOverview(
+                new ByteArrayInputStream(Fixtures.read(Fixtures.FULL_OVERVIEW))),
+            Instant.now());
+    isbns = snapshot.books().stream().map(Book::getIsbn).toList();
+
+    List<Book> favourites = new ArrayList<>();
+    int i = 0;
+    for (Book book : snapshot.books()) {
+      if (i++ % 4 == 0) {
+        favourites.add(book.toBuilder().isFavourite(true).build());
+      }
+    }
+    repository.saveAll(favourites);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public BestsellerIndex mergeWithStoredBooks() {
+    Map<String, Book> storedBooks =
+        repository.findAllById(isbns).stream()
+            .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+    return BestsellerIndex.build(snapshot, storedBooks);
+  }
+}
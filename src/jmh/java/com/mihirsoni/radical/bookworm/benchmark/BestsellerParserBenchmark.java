@@ -0,0 +1,59 @@
+package com.mihirsoni.radical.bookworm.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.service.BestsellerParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of recorded New York Times API responses: the full-overview into the de-duplicated set of
+ * bestsellers, the full-overview into bare {@link Book} objects without collecting them, and one
+ * current list
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BestsellerParserBenchmark {
+  private BestsellerParser parser;
+  private byte[] fullOverview;
+  private byte[] currentList;
+
+  @Setup
+  public void setUp() {
+    parser = new BestsellerParser(new ObjectMapper());
+    fullOverview = Fixtures.read(Fixtures.FULL_OVERVIEW);
+    currentList = Fixtures.read(Fixtures.CURRENT_LIST);
+  }
+
+  @Benchmark
+  public Set<Book> parseFullOverview() throws IOException {
+    return parser.parseFullOverview(new ByteArrayInputStream(fullOverview));
+  }
+
+  @Benchmark
+  public void buildBooksOfFullOverview(Blackhole blackhole) throws IOException {
+    parser.parseFullOverview(new ByteArrayInputStream(fullOverview), blackhole::consume);
+  }
+
+  @Benchmark
+  public Set<Book> parseCurrentList() throws IOException {
+    return parser.parseCurrentList(new ByteArrayInputStream(currentList));
+  }
+}
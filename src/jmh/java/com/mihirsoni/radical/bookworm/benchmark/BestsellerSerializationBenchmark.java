@@ -0,0 +1,67 @@
+package com.mihirsoni.radical.bookworm.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.BestsellerIndex;
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.service.BestsellerParser;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache.EncodedBestsellers;
+import com.mihirsoni.radical.bookworm.service.BookwormMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialisation of all bestsellers of the recorded full-overview: Jackson on every call, as done
+ * before responses were pre-encoded, and the pre-encoded bytes served per index version
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BestsellerSerializationBenchmark {
+  private ObjectMapper objectMapper;
+  private BestsellerIndex index;
+  private BestsellerResponseCache responseCache;
+
+  @Setup
+  public void setUp() throws IOException {
+    objectMapper = new ObjectMapper();
+    BestsellerParser parser = new BestsellerParser(objectMapper);
+    index =
+        BestsellerIndex.build(
+            new BestsellerSnapshot(
+                parser.parseFullOverview(
+                    new ByteArrayInputStream(Fixtures.read(Fixtures.FULL_OVERVIEW))),
+                Instant.now()),
+            Map.of());
+    responseCache =
+        new BestsellerResponseCache(objectMapper, new BookwormMetrics(new SimpleMeterRegistry()));
+  }
+
+  @Benchmark
+  public byte[] serializeWithJackson() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(index.books());
+  }
+
+  @Benchmark
+  public EncodedBestsellers servePreEncoded() {
+    return responseCache.get(index, "b" + index.version());
+  }
+}
@@ -0,0 +1,28 @@
+package com.mihirsoni.radical.bookworm.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/** Recorded New York Times API responses shared with the functional tests */
+final class Fixtures {
+  static final String FULL_OVERVIEW = "/external_response.json";
+  static final String CURRENT_LIST = "/list_response.json";
+
+  private Fixtures() {}
+
+  /**
+   * @param resource classpath resource of a recorded response
+   * @return bytes of the response
+   */
+  static byte[] read(String resource) {
+    try (InputStream in = Fixtures.class.getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing fixture " + resource);
+      }
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read fixture " + resource, e);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.mihirsoni.radical.bookworm.loadtest;
+
+import com.mihirsoni.radical.bookworm.service.BestsellerSnapshotCache;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Concurrency ceiling of request handling while New York Times API is slow, with platform and with
+ * virtual threads.<br>
+ * A freshly started application has no bestsellers yet, so a burst of requests for them all waits
+ * on the one call to the stub. Every waiting request holds its request thread, so with platform
+ * threads at most <code>server.tomcat.threads.max</code> requests can wait at once and the rest,
+ * including favourites that do not need New York Times at all, queue behind them. Requests
+ * probing the favourites are sent while the burst waits.<br>
+ * Settings are passed as <code>key=value</code> arguments, see {@link #DEFAULTS}. Virtual threads
+ * need a Java 21 runtime, on older runtimes only platform threads are measured.
+ */
+public final class ConcurrencyCeiling {
+  /**
+   * burst: concurrent requests for all bestsellers, probes: concurrent requests for favourites sent
+   * once the burst waits, probe-delay: ISO-8601 delay of the probes after the burst, nyt-latency:
+   * delay of the stub response, tomcat-threads: maximum number of platform request threads
+   */
+  private static final Map<String, String> DEFAULTS =
+      Map.of(
+          "burst", "1000",
+          "probes", "20",
+          "probe-delay", "PT1S",
+          "nyt-latency", "PT5S",
+          "tomcat-threads", "200");
+
+  private static final Path SNAPSHOT_FILE = Path.of("target", "ceiling-snapshot.bin");
+
+  private final HttpClient client =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> settings = LoadTest.settings(DEFAULTS, args);
+    ConcurrencyCeiling ceiling = new ConcurrencyCeiling();
+    List<String> rows = new ArrayList<>();
+    rows.add(ceiling.measure(false, settings));
+    if (Runtime.version().feature() >= 21) {
+      rows.add(ceiling.measure(true, settings));
+    } else {
+      System.out.println("Virtual threads need Java 21, measuring platform threads only");
+    }
+    String format = "%-9s %7s %14s %11s %11s %16s %16s%n";
+    System.out.printf(
+        format,
+        "threads",
+        "burst",
+        "waited on NYT",
+        "burst p50",
+        "burst p99",
+        "favourites p50",
+        "favourites p99");
+    rows.forEach(System.out::print);
+  }
+
+  /**
+   * Starts the application cold and sends the burst and the probes
+   *
+   * @param virtualThreads true to handle requests on virtual threads
+   * @param settings settings of the run
+   * @return row of the report
+   */
+  private String measure(boolean virtualThreads, Map<String, String> settings) throws Exception {
+    int burst = Integer.parseInt(settings.get("burst"));
+    int probes = Integer.parseInt(settings.get("probes"));
+    Files.deleteIfExists(SNAPSHOT_FILE);
+    try (NytStubServer nyt = new NytStubServer(Duration.parse(settings.get("nyt-latency")), 0);
+        ConfigurableApplicationContext context =
+            LoadTest.start(
+                nyt,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + settings.get("tomcat-threads"),
+                "--server.tomcat.max-connections=" + (burst + probes + 100),
+                "--bookworm.nyt.snapshot-file=" + SNAPSHOT_FILE,
+                "--bookworm.nyt.refresh-interval=PT24H")) {
+      String apiUrl = LoadTest.apiUrl(context);
+      System.out.printf(
+          "Sending %d requests with %s threads%n",
+          burst, virtualThreads ? "virtual" : "platform");
+
+      List<CompletableFuture<Long>> burstRequests = new ArrayList<>();
+      for (int i = 0; i < burst; i++) {
+        burstRequests.add(send(apiUrl + "/get-all-bestsellers"));
+      }
+      Thread.sleep(Duration.parse(settings.get("probe-delay")).toMillis());
+      List<CompletableFuture<Long>> probeRequests = new ArrayList<>();
+      for (int i = 0; i < probes; i++) {
+        probeRequests.add(send(apiUrl + "/get-favourites"));
+      }
+
+      LatencyRecorder burstLatencies = join(burstRequests);
+      LatencyRecorder probeLatencies = join(probeRequests);
+      long waited = context.getBean(BestsellerSnapshotCache.class).getCoalescedCount();
+      return String.format(
+          Locale.ROOT,
+          "%-9s %7d %14d %8.0f ms %8.0f ms %13.0f ms %13.0f ms%n",
+          virtualThreads ? "virtual" : "platform",
+          burst,
+          waited,
+          burstLatencies.percentileMillis(50),
+          burstLatencies.percentileMillis(99),
+          probeLatencies.percentileMillis(50),
+          probeLatencies.percentileMillis(99));
+    }
+  }
+
+  /**
+   * @param url URL to get
+   * @return latency of the request in nanoseconds, -1 if it failed
+   */
+  private CompletableFuture<Long> send(String url) {
+    long start = System.nanoTime();
+    return client
+        .sendAsync(HttpRequest.newBuilder(URI.create(url)).GET().build(), BodyHandlers.discarding())
+        .thenApply(response -> response.statusCode() < 400 ? System.nanoTime() - start : -1L)
+        .exceptionally(e -> -1L);
+  }
+
+  private static LatencyRecorder join(List<CompletableFuture<Long>> requests) {
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (CompletableFuture<Long> request : requests) {
+      long nanos = request.join();
+      recorder.record(Math.max(nanos, 0), nanos < 0);
+    }
+    if (recorder.failures() > 0) {
+      System.out.printf("%d of %d requests failed%n", recorder.failures(), recorder.count());
+    }
+    return recorder;
+  }
+}
@@ -0,0 +1,56 @@
+package com.mihirsoni.radical.bookworm.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latencies and failures of one endpoint recorded by one client thread, merged into one recorder
+ * per endpoint once the run is over. Not thread-safe
+ */
+class LatencyRecorder {
+  private long[] latencies = new long[1024];
+  private int count;
+  private long failures;
+
+  /**
+   * @param nanos latency of a request
+   * @param failed true if the request failed or got an unexpected status
+   */
+  void record(long nanos, boolean failed) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = nanos;
+    if (failed) {
+      failures++;
+    }
+  }
+
+  void addAll(LatencyRecorder other) {
+    for (int i = 0; i < other.count; i++) {
+      record(other.latencies[i], false);
+    }
+    failures += other.failures;
+  }
+
+  int count() {
+    return count;
+  }
+
+  long failures() {
+    return failures;
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100
+   * @return latency of the percentile in milliseconds, 0 if nothing was recorded
+   */
+  double percentileMillis(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * count) - 1;
+    return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+  }
+}
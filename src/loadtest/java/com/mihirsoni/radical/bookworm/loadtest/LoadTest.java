@@ -0,0 +1,300 @@
+package com.mihirsoni.radical.bookworm.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.BookworkExternalApiApplication;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.service.BestsellerParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end load test: starts the application against a local stub of New York Times API and
+ * drives a mix of requests to the six endpoints of the controller from several client threads,
+ * then reports throughput and p50/p99/p999 latency per endpoint.<br>
+ * Settings are passed as <code>key=value</code> arguments, see {@link #DEFAULTS}.
+ */
+public final class LoadTest {
+  /**
+   * threads: client threads, warmup and duration: ISO-8601 durations of the unrecorded warmup and
+   * the recorded run, nyt-latency: delay of every stub response, nyt-429-every: answer every n-th
+   * stub request with 429 (0 never), snapshot-ttl: age after which bestsellers are fetched again,
+   * virtual-threads: handle requests on virtual threads (Java 21 and later)
+   */
+  private static final Map<String, String> DEFAULTS =
+      Map.of(
+          "threads", "16",
+          "warmup", "PT10S",
+          "duration", "PT30S",
+          "nyt-latency", "PT0.2S",
+          "nyt-429-every", "0",
+          "snapshot-ttl", "PT10S",
+          "virtual-threads", "false");
+
+  private static final String API = "/api/v1/books";
+
+  /** Endpoints driven by the clients, weighted by their share of the requests in 1000 */
+  private enum Endpoint {
+    GET_ALL_BESTSELLERS(500),
+    GET_FAVOURITES(200),
+    ADD_TO_FAVOURITES(120),
+    REMOVE_FROM_FAVOURITES(80),
+    UPDATE_RATING_AND_PRICE(99),
+    PURGE_DATABASE(1);
+
+    private final int weight;
+
+    Endpoint(int weight) {
+      this.weight = weight;
+    }
+
+    static Endpoint pick(int draw) {
+      for (Endpoint endpoint : values()) {
+        draw -= endpoint.weight;
+        if (draw < 0) {
+          return endpoint;
+        }
+      }
+      return GET_ALL_BESTSELLERS;
+    }
+  }
+
+  private final HttpClient client =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final String baseUrl;
+  private final List<Book> books;
+
+  private LoadTest(String baseUrl, List<Book> books) {
+    this.baseUrl = baseUrl;
+    this.books = books;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> settings = settings(DEFAULTS, args);
+    int threads = Integer.parseInt(settings.get("threads"));
+    Duration warmup = Duration.parse(settings.get("warmup"));
+    Duration duration = Duration.parse(settings.get("duration"));
+
+    try (NytStubServer nyt =
+            new NytStubServer(
+                Duration.parse(settings.get("nyt-latency")),
+                Integer.parseInt(settings.get("nyt-429-every")));
+        ConfigurableApplicationContext context =
+            start(
+                nyt,
+                "--bookworm.nyt.snapshot-ttl=" + settings.get("snapshot-ttl"),
+                "--bookworm.nyt.snapshot-file=target/loadtest-snapshot.bin",
+                "--spring.threads.virtual.enabled=" + settings.get("virtual-threads"))) {
+      LoadTest loadTest = new LoadTest(apiUrl(context), readBooks());
+
+      System.out.printf("Warming up %d clients for %s%n", threads, warmup);
+      loadTest.run(threads, warmup);
+      System.out.printf("Running %d clients for %s%n", threads, duration);
+      long nytRequests = nyt.requests();
+      long nytRateLimited = nyt.rateLimited();
+      Map<Endpoint, LatencyRecorder> results = loadTest.run(threads, duration);
+      report(results, duration);
+      System.out.printf(
+          "New York Times stub: %d requests, %d answered with 429%n",
+          nyt.requests() - nytRequests, nyt.rateLimited() - nytRateLimited);
+    }
+  }
+
+  /**
+   * Reads <code>key=value</code> arguments over their defaults
+   *
+   * @param defaults every known setting with its default
+   * @param args arguments of the main method
+   * @return settings
+   * @throws IllegalArgumentException if an argument is not a known setting
+   */
+  static Map<String, String> settings(Map<String, String> defaults, String[] args) {
+    Map<String, String> settings = new HashMap<>(defaults);
+    for (String arg : args) {
+      String[] setting = arg.split("=", 2);
+      if (setting.length != 2 || !defaults.containsKey(setting[0])) {
+        throw new IllegalArgumentException(
+            "Unknown setting " + arg + ", expected one of " + defaults.keySet());
+      }
+      settings.put(setting[0], setting[1]);
+    }
+    return settings;
+  }
+
+  /**
+   * Starts the application on a random port with a fresh in-memory database, against the stub
+   *
+   * @param nyt stub of New York Times API
+   * @param args further command line arguments, overriding the defaults of this method
+   * @return context of the running application
+   */
+  static ConfigurableApplicationContext start(NytStubServer nyt, String... args) {
+    List<String> arguments =
+        new ArrayList<>(
+            List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--BOOKWORM_API_KEY=loadtest",
+                "--bookworm.dev-url=http://localhost:8080",
+                "--bookworm.prod-url=http://localhost",
+                "--bookworm.nyt.base-url=" + nyt.baseUrl(),
+                "--bookworm.nyt.refresh-interval=PT1S",
+                "--bookworm.nyt.quota.per-minute=1000",
+                "--bookworm.nyt.quota.per-day=100000",
+                "--logging.level.root=WARN"));
+    // a property given twice on the command line is bound as a list, so overrides replace defaults
+    for (String arg : args) {
+      String property = arg.substring(0, arg.indexOf('=') + 1);
+      arguments.removeIf(argument -> argument.startsWith(property));
+      arguments.add(arg);
+    }
+    return new SpringApplicationBuilder(BookworkExternalApiApplication.class)
+        .run(arguments.toArray(String[]::new));
+  }
+
+  /**
+   * @param context context of the running application
+   * @return base URL of the book API of the application
+   */
+  static String apiUrl(ConfigurableApplicationContext context) {
+    return "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + API;
+  }
+
+  private static List<Book> readBooks() throws IOException {
+    try (InputStream in = LoadTest.class.getResourceAsStream("/external_response.json")) {
+      return new ArrayList<>(new BestsellerParser(new ObjectMapper()).parseFullOverview(in));
+    }
+  }
+
+  /**
+   * Drives the endpoints from several client threads until the duration is over
+   *
+   * @param threads number of client threads
+   * @param duration duration of the run
+   * @return latencies of every endpoint, merged over all clients
+   */
+  private Map<Endpoint, LatencyRecorder> run(int threads, Duration duration) throws Exception {
+    long deadline = System.nanoTime() + duration.toNanos();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Map<Endpoint, LatencyRecorder>>> clients = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        clients.add(executor.submit(() -> drive(deadline)));
+      }
+      Map<Endpoint, LatencyRecorder> merged = recorders();
+      for (Future<Map<Endpoint, LatencyRecorder>> client : clients) {
+        client.get().forEach((endpoint, recorder) -> merged.get(endpoint).addAll(recorder));
+      }
+      return merged;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Map<Endpoint, LatencyRecorder> drive(long deadline) throws IOException {
+    Map<Endpoint, LatencyRecorder> recorders = recorders();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (System.nanoTime() < deadline) {
+      Endpoint endpoint = Endpoint.pick(random.nextInt(1000));
+      HttpRequest request = request(endpoint, random);
+      long start = System.nanoTime();
+      boolean failed;
+      try {
+        HttpResponse<Void> response = client.send(request, BodyHandlers.discarding());
+        failed = response.statusCode() >= 400;
+      } catch (IOException e) {
+        failed = true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      recorders.get(endpoint).record(System.nanoTime() - start, failed);
+    }
+    return recorders;
+  }
+
+  private HttpRequest request(Endpoint endpoint, ThreadLocalRandom random) throws IOException {
+    Book book = books.get(random.nextInt(books.size()));
+    return switch (endpoint) {
+      case GET_ALL_BESTSELLERS ->
+          get("/get-all-bestsellers").header("Accept-Encoding", "gzip").build();
+      case GET_FAVOURITES -> get("/get-favourites").build();
+      case ADD_TO_FAVOURITES -> json("POST", "/add-to-favourites", book);
+      case REMOVE_FROM_FAVOURITES -> json("DELETE", "/remove-from-favourites", book);
+      case UPDATE_RATING_AND_PRICE -> {
+        Book changed =
+            book.toBuilder().rating(random.nextInt(1, 6)).price(random.nextInt(100, 5000)).build();
+        yield json("PUT", "/update-rating-and-price", changed);
+      }
+      case PURGE_DATABASE ->
+          HttpRequest.newBuilder(URI.create(baseUrl + "/purge-database")).DELETE().build();
+    };
+  }
+
+  private HttpRequest.Builder get(String path) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+  }
+
+  private HttpRequest json(String method, String path, Book book) throws IOException {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path))
+        .header("Content-Type", "application/json")
+        .method(method, BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(book)))
+        .build();
+  }
+
+  private static Map<Endpoint, LatencyRecorder> recorders() {
+    Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+    for (Endpoint endpoint : Endpoint.values()) {
+      recorders.put(endpoint, new LatencyRecorder());
+    }
+    return recorders;
+  }
+
+  private static void report(Map<Endpoint, LatencyRecorder> results, Duration duration) {
+    double seconds = duration.toMillis() / 1000.0;
+    String format = "%-24s %9s %8s %10s %9s %9s %9s%n";
+    System.out.printf(
+        format, "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+    LatencyRecorder total = new LatencyRecorder();
+    results.forEach(
+        (endpoint, recorder) -> {
+          print(format, endpoint.name().toLowerCase(Locale.ROOT), recorder, seconds);
+          total.addAll(recorder);
+        });
+    print(format, "total", total, seconds);
+  }
+
+  private static void print(String format, String name, LatencyRecorder recorder, double seconds) {
+    System.out.printf(
+        format,
+        name,
+        recorder.count(),
+        recorder.failures(),
+        String.format(Locale.ROOT, "%.1f", recorder.count() / seconds),
+        String.format(Locale.ROOT, "%.2f", recorder.percentileMillis(50)),
+        String.format(Locale.ROOT, "%.2f", recorder.percentileMillis(99)),
+        String.format(Locale.ROOT, "%.2f", recorder.percentileMillis(99.9)));
+  }
+}
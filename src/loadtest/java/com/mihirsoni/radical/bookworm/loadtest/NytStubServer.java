@@ -0,0 +1,117 @@
+package com.mihirsoni.radical.bookworm.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for New York Times API serving the recorded responses of the functional tests:
+ * the full-overview for <code>/svc/books/v3/lists/full-overview.json</code> and one current list
+ * for every <code>/svc/books/v3/lists/current/{list}.json</code>.<br>
+ * Every response is delayed by a fixed latency, and every n-th request can be answered with 429 to
+ * exercise the rate limit handling of the application.
+ */
+class NytStubServer implements AutoCloseable {
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final byte[] fullOverview;
+  private final byte[] currentList;
+  private final Duration latency;
+  private final int rateLimitEvery;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+
+  /**
+   * @param latency delay of every response
+   * @param rateLimitEvery answer every n-th request with 429, 0 to never do so
+   * @throws IOException if the server cannot be started
+   */
+  NytStubServer(Duration latency, int rateLimitEvery) throws IOException {
+    this.fullOverview = read("/external_response.json");
+    this.currentList = read("/list_response.json");
+    this.latency = latency;
+    this.rateLimitEvery = rateLimitEvery;
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/svc/books/v3/lists/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * @return base URL of the stub, to use as <code>bookworm.nyt.base-url</code>
+   */
+  String baseUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  long requests() {
+    return requests.get();
+  }
+
+  long rateLimited() {
+    return rateLimited.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      long request = requests.incrementAndGet();
+      sleep(latency);
+      if (rateLimitEvery > 0 && request % rateLimitEvery == 0) {
+        rateLimited.incrementAndGet();
+        exchange.sendResponseHeaders(429, -1);
+        return;
+      }
+      String path = exchange.getRequestURI().getPath();
+      byte[] body;
+      if (path.endsWith("/full-overview.json")) {
+        body = fullOverview;
+      } else if (path.startsWith("/svc/books/v3/lists/current/")) {
+        body = currentList;
+      } else {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    if (duration.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static byte[] read(String resource) {
+    try (InputStream in = NytStubServer.class.getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing recorded response " + resource);
+      }
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read recorded response " + resource, e);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
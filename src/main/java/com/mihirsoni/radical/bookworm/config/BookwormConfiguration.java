@@ -1,19 +1,321 @@
 package com.mihirsoni.radical.bookworm.config;
 
+import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import com.mihirsoni.radical.bookworm.service.BestsellerListCache;
+import com.mihirsoni.radical.bookworm.service.BestsellerSnapshotCache;
+import com.mihirsoni.radical.bookworm.service.BestsellerSnapshotStore;
+import com.mihirsoni.radical.bookworm.service.FavouriteWriteBehind;
+import com.mihirsoni.radical.bookworm.service.NytCircuitBreaker;
+import com.mihirsoni.radical.bookworm.service.PurgeJobs;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Getter
+@Slf4j
 @Configuration
+@EnableScheduling
 public class BookwormConfiguration {
   @Value("${BOOKWORM_API_KEY}")
   private String apiKey;
 
+  @Value("${bookworm.nyt.base-url}")
+  private String nytBaseUrl;
+
+  @Value("${bookworm.nyt.snapshot-ttl}")
+  private Duration snapshotTtl;
+
+  @Value("${bookworm.nyt.snapshot-file}")
+  private Path snapshotFile;
+
+  @Value("${bookworm.nyt.refresh-lists:}")
+  private List<String> refreshLists;
+
+  @Value("${bookworm.nyt.fetch-concurrency}")
+  private int fetchConcurrency;
+
+  @Value("${bookworm.nyt.circuit.open-duration}")
+  private Duration circuitOpenDuration;
+
+  @Value("${bookworm.nyt.circuit.max-open-duration}")
+  private Duration circuitMaxOpenDuration;
+
+  @Value("${bookworm.nyt.quota.per-minute}")
+  private int quotaPerMinute;
+
+  @Value("${bookworm.nyt.quota.per-day}")
+  private int quotaPerDay;
+
+  @Value("${bookworm.write-behind.enabled}")
+  private boolean writeBehindEnabled;
+
+  @Value("${bookworm.write-behind.batch-size}")
+  private int writeBehindBatchSize;
+
+  /**
+   * Executor of Spring MVC async requests, such as streamed bestsellers, and of <code>@Async</code>
+   * methods, built from <code>spring.task.execution.*</code> the way Spring Boot builds it. Boot
+   * backs off from defining its own as soon as any other executor bean exists, which would leave
+   * async requests on an unbounded executor
+   *
+   * @param builder builder configured by Spring Boot
+   * @return bounded executor for async requests
+   */
+  @Bean(
+      name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+      })
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+  /**
+   * Executor of Spring MVC async requests and of <code>@Async</code> methods with virtual threads
+   * enabled, one virtual thread per task, see {@link
+   * #applicationTaskExecutor(ThreadPoolTaskExecutorBuilder)}
+   *
+   * @param builder builder configured by Spring Boot, with virtual threads
+   * @return executor for async requests
+   */
+  @Bean(
+      name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+      })
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public SimpleAsyncTaskExecutor applicationTaskExecutorVirtualThreads(
+      SimpleAsyncTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+  /**
+   * Executor for calls to New York Times API made off the request path
+   *
+   * @return executor for background New York Times API calls
+   */
+  @Bean
+  public ThreadPoolTaskExecutor nytTaskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("nyt-");
+    return executor;
+  }
+
+  /**
+   * Executor fanning out calls to New York Times API for several lists, bounded so a refresh never
+   * sends more than <code>bookworm.nyt.fetch-concurrency</code> calls at once.<br>
+   * With virtual threads enabled (<code>spring.threads.virtual.enabled</code> on Java 21), every
+   * fetch gets its own virtual thread and waits for a permit there, so submitting never blocks
+   *
+   * @param environment environment telling if virtual threads are enabled
+   * @return executor for concurrent list fetches
+   */
+  @Bean
+  public AsyncTaskExecutor nytFetchExecutor(Environment environment) {
+    if (Threading.VIRTUAL.isActive(environment)) {
+      Semaphore permits = new Semaphore(fetchConcurrency);
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("nyt-fetch-");
+      executor.setVirtualThreads(true);
+      executor.setTaskDecorator(
+          task ->
+              () -> {
+                permits.acquireUninterruptibly();
+                try {
+                  task.run();
+                } finally {
+                  permits.release();
+                }
+              });
+      return executor;
+    }
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(fetchConcurrency);
+    executor.setMaxPoolSize(fetchConcurrency);
+    executor.setThreadNamePrefix("nyt-fetch-");
+    return executor;
+  }
+
+  @Bean
+  public BestsellerSnapshotCache bestsellerSnapshotCache(ThreadPoolTaskExecutor nytTaskExecutor) {
+    return new BestsellerSnapshotCache(
+        snapshotTtl, nytTaskExecutor, new BestsellerSnapshotStore(snapshotFile));
+  }
+
+  /**
+   * Per-list snapshot caches. Every list of <code>bookworm.nyt.refresh-lists</code> takes a token
+   * of the per-minute quota, so with more lists than the quota a snapshot is only built once the
+   * remaining lists are fetched in a later quota window, which is warned about at startup
+   *
+   * @param nytTaskExecutor executor for background refreshes
+   * @param nytFetchExecutor executor fanning out list fetches
+   * @return list caches
+   */
+  @Bean
+  public BestsellerListCache bestsellerListCache(
+      ThreadPoolTaskExecutor nytTaskExecutor, AsyncTaskExecutor nytFetchExecutor) {
+    if (refreshLists != null && refreshLists.size() > quotaPerMinute) {
+      log.warn(
+          "{} refresh lists exceed the quota of {} calls per minute, a snapshot is only built"
+              + " once the remaining lists are fetched in a later quota window",
+          refreshLists.size(),
+          quotaPerMinute);
+    }
+    return new BestsellerListCache(snapshotTtl, nytTaskExecutor, nytFetchExecutor);
+  }
+
+  /**
+   * Executor flushing the write-behind queue once it reaches its batch size
+   *
+   * @return executor for write-behind flushes
+   */
+  @Bean
+  public ThreadPoolTaskExecutor writeBehindExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("write-behind-");
+    return executor;
+  }
+
+  @Bean
+  public FavouriteWriteBehind favouriteWriteBehind(
+      BookwormRepository repository,
+      PlatformTransactionManager transactionManager,
+      ThreadPoolTaskExecutor writeBehindExecutor) {
+    return new FavouriteWriteBehind(
+        writeBehindEnabled,
+        writeBehindBatchSize,
+        repository,
+        new TransactionTemplate(transactionManager),
+        writeBehindExecutor);
+  }
+
+  /**
+   * Executor running purges of the database submitted to run in the background
+   *
+   * @return executor for purge jobs
+   */
+  @Bean
+  public ThreadPoolTaskExecutor purgeExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("purge-");
+    return executor;
+  }
+
+  @Bean
+  public PurgeJobs purgeJobs(ThreadPoolTaskExecutor purgeExecutor) {
+    return new PurgeJobs(purgeExecutor);
+  }
+
+  /**
+   * Guards against virtual threads pinning every carrier thread in the JDBC pool. H2 and parts of
+   * the JDBC path block inside <code>synchronized</code> code, which keeps the virtual thread on
+   * its carrier. Capping the pool below the number of carriers bounds how many carriers can be
+   * pinned at once; other virtual threads wait for a connection unpinned in the pool
+   *
+   * @param environment environment with <code>bookworm.virtual-threads.max-db-connections</code>
+   * @return post processor capping the pool size of the data source
+   */
+  @Bean
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public static BeanPostProcessor virtualThreadPinningGuard(Environment environment) {
+    int carriers =
+        Integer.getInteger(
+            "jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    int configured =
+        environment.getProperty("bookworm.virtual-threads.max-db-connections", Integer.class, 0);
+    int maxConnections = configured > 0 ? configured : Math.max(1, carriers - 1);
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource
+            && dataSource.getMaximumPoolSize() > maxConnections) {
+          log.info(
+              "Virtual threads enabled, capping JDBC pool at {} connections for {} carrier threads",
+              maxConnections,
+              carriers);
+          dataSource.setMaximumPoolSize(maxConnections);
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Bean
+  public NytCircuitBreaker nytCircuitBreaker() {
+    return new NytCircuitBreaker(
+        circuitOpenDuration,
+        circuitMaxOpenDuration,
+        quotaPerMinute,
+        quotaPerDay,
+        Clock.systemUTC());
+  }
+
+  /**
+   * Counters kept by the snapshot cache and the circuit breaker, exposed as meters: calls made to
+   * load the bestseller snapshot, callers that joined a running load and rate limit hits
+   *
+   * @return binder registering the counters
+   */
   @Bean
-  public RestTemplate restTemplate() {
-    return new RestTemplate();
+  public MeterBinder nytMeterBinder(
+      BestsellerSnapshotCache bestsellerSnapshotCache, NytCircuitBreaker nytCircuitBreaker) {
+    return registry -> {
+      FunctionCounter.builder(
+              "bookworm.snapshot.loads",
+              bestsellerSnapshotCache,
+              BestsellerSnapshotCache::getLoadCount)
+          .description("Calls made to load the bestseller snapshot")
+          .register(registry);
+      FunctionCounter.builder(
+              "bookworm.snapshot.coalesced",
+              bestsellerSnapshotCache,
+              BestsellerSnapshotCache::getCoalescedCount)
+          .description("Callers that joined an already running load of the bestseller snapshot")
+          .register(registry);
+      FunctionCounter.builder(
+              "bookworm.nyt.rate.limits",
+              nytCircuitBreaker,
+              NytCircuitBreaker::getRateLimitedCount)
+          .description("Rate limit hits on New York Times API")
+          .tag("source", "nyt")
+          .register(registry);
+      FunctionCounter.builder(
+              "bookworm.nyt.rate.limits",
+              nytCircuitBreaker,
+              NytCircuitBreaker::getQuotaRejectedCount)
+          .description("Rate limit hits on New York Times API")
+          .tag("source", "client-quota")
+          .register(registry);
+    };
   }
 }
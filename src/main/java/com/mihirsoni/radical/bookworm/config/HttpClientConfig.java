@@ -0,0 +1,202 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Outbound HTTP client used for New York Times API.<br>
+ * Defaults to a pooled Apache HttpClient with keep-alive, explicit timeouts and gzip transfer.
+ * Setting <code>bookworm.nyt.http.client=jdk</code> switches to the JDK HttpClient, which
+ * negotiates HTTP/2 where the server supports it.
+ */
+@Configuration
+public class HttpClientConfig {
+  public enum Client {
+    APACHE,
+    JDK
+  }
+
+  @Value("${bookworm.nyt.http.client}")
+  private Client client;
+
+  @Value("${bookworm.nyt.http.connect-timeout}")
+  private Duration connectTimeout;
+
+  @Value("${bookworm.nyt.http.read-timeout}")
+  private Duration readTimeout;
+
+  @Value("${bookworm.nyt.http.max-connections}")
+  private int maxConnections;
+
+  @Value("${bookworm.nyt.http.keep-alive}")
+  private Duration keepAlive;
+
+  @Bean
+  public ClientHttpRequestFactory nytRequestFactory() {
+    return client == Client.JDK
+        ? jdkRequestFactory(connectTimeout, readTimeout)
+        : pooledRequestFactory(connectTimeout, readTimeout, maxConnections, keepAlive);
+  }
+
+  @Bean
+  public RestTemplate restTemplate(
+      RestTemplateBuilder builder, ClientHttpRequestFactory nytRequestFactory) {
+    RestTemplateBuilder restTemplateBuilder = builder.requestFactory(() -> nytRequestFactory);
+    if (client == Client.JDK) {
+      restTemplateBuilder = restTemplateBuilder.additionalInterceptors(gzipInterceptor());
+    }
+    return restTemplateBuilder.build();
+  }
+
+  /**
+   * Builds a request factory backed by a pooled Apache HttpClient. Connections are kept alive and
+   * reused, idle ones are evicted, and gzip responses are requested and decompressed by the client
+   *
+   * @param connectTimeout timeout for establishing a connection
+   * @param readTimeout timeout for waiting on response data
+   * @param maxConnections size of the connection pool
+   * @param keepAlive how long idle connections are kept for reuse
+   * @return pooled request factory
+   */
+  public static HttpComponentsClientHttpRequestFactory pooledRequestFactory(
+      Duration connectTimeout, Duration readTimeout, int maxConnections, Duration keepAlive) {
+    PoolingHttpClientConnectionManager connectionManager =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultConnectionConfig(
+                ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(connectTimeout))
+                    .setSocketTimeout(Timeout.of(readTimeout))
+                    .build())
+            .build();
+    CloseableHttpClient httpClient =
+        HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(
+                RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                    .setResponseTimeout(Timeout.of(readTimeout))
+                    .build())
+            .setKeepAliveStrategy((response, context) -> TimeValue.of(keepAlive))
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.of(keepAlive))
+            .build();
+    return new HttpComponentsClientHttpRequestFactory(httpClient);
+  }
+
+  /**
+   * Builds a request factory backed by the JDK HttpClient, preferring HTTP/2. The JDK client pools
+   * and keeps connections alive on its own but does not decompress responses, see {@link
+   * #gzipInterceptor()}
+   *
+   * @param connectTimeout timeout for establishing a connection
+   * @param readTimeout timeout for waiting on the response
+   * @return JDK request factory
+   */
+  public static JdkClientHttpRequestFactory jdkRequestFactory(
+      Duration connectTimeout, Duration readTimeout) {
+    HttpClient httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+    requestFactory.setReadTimeout(readTimeout);
+    return requestFactory;
+  }
+
+  /**
+   * Requests gzip transfer and decompresses gzip responses, for clients that do not do it on their
+   * own
+   *
+   * @return gzip interceptor
+   */
+  public static ClientHttpRequestInterceptor gzipInterceptor() {
+    return (request, body, execution) -> {
+      request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+      ClientHttpResponse response = execution.execute(request, body);
+      return "gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))
+          ? new GzipClientHttpResponse(response)
+          : response;
+    };
+  }
+
+  /**
+   * Response whose body is decompressed from gzip on the fly. An empty body, as sent with 204 or in
+   * answer to HEAD even when marked as gzip, is passed on as it is
+   */
+  private static class GzipClientHttpResponse implements ClientHttpResponse {
+    private final ClientHttpResponse response;
+    private final HttpHeaders headers;
+    private InputStream body;
+
+    GzipClientHttpResponse(ClientHttpResponse response) {
+      this.response = response;
+      this.headers = new HttpHeaders();
+      this.headers.putAll(response.getHeaders());
+      this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+      this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() throws IOException {
+      return response.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+      return response.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      if (body == null) {
+        PushbackInputStream in = new PushbackInputStream(response.getBody());
+        int first = in.read();
+        if (first == -1) {
+          body = in;
+        } else {
+          in.unread(first);
+          body = new GZIPInputStream(in);
+        }
+      }
+      return body;
+    }
+
+    @Override
+    public void close() {
+      response.close();
+    }
+  }
+}
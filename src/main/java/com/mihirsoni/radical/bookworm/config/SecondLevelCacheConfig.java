@@ -0,0 +1,43 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import java.net.URI;
+import java.util.UUID;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * JCache cache manager of the Hibernate second-level and query cache. Hibernate closes its cache
+ * manager when the application context closes, and the manager Caffeine hands out by default is
+ * shared by the whole JVM, so every context gets its own. Otherwise closing one context, as tests
+ * do, closes the caches of every other one.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+  /**
+   * Creates a cache manager of the configured provider for this context. The regions are still
+   * configured in <code>application.conf</code>, which Caffeine reads for any URI that is not a
+   * file or resource
+   *
+   * @return customizer passing the cache manager to Hibernate
+   */
+  @Bean
+  public HibernatePropertiesCustomizer cacheManagerPerContext() {
+    return properties -> {
+      Object provider = properties.get(ConfigSettings.PROVIDER);
+      CachingProvider cachingProvider =
+          provider == null
+              ? Caching.getCachingProvider()
+              : Caching.getCachingProvider(provider.toString());
+      properties.put(
+          ConfigSettings.CACHE_MANAGER,
+          cachingProvider.getCacheManager(
+              URI.create("urn:bookworm:second-level-cache:" + UUID.randomUUID()),
+              cachingProvider.getDefaultClassLoader()));
+    };
+  }
+}
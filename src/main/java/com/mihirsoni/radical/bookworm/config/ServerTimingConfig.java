@@ -0,0 +1,88 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.controller.ServerTimingFilter;
+import com.mihirsoni.radical.bookworm.service.RequestTimings;
+import com.mihirsoni.radical.bookworm.service.RequestTimings.Stage;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Per-request breakdown of the bestseller pipeline sent as <code>Server-Timing</code> header, see
+ * {@link ServerTimingFilter}. Calls to New York Times API and parsing are timed by the service,
+ * repository methods and JSON serialisation of responses are timed here. The repository and
+ * serialisation hooks are only registered when <code>bookworm.server-timing.enabled</code> is set,
+ * otherwise repositories and the stock Jackson converter are left as they are.
+ */
+@Configuration
+public class ServerTimingConfig {
+  @Value("${bookworm.server-timing.enabled}")
+  private boolean enabled;
+
+  @Value("${bookworm.server-timing.slow-request-threshold}")
+  private Duration slowRequestThreshold;
+
+  @Bean
+  public ServerTimingFilter serverTimingFilter() {
+    return new ServerTimingFilter(enabled, slowRequestThreshold);
+  }
+
+  /**
+   * Adds the time spent in repository methods to the database stage of the current request
+   *
+   * @return post processor customising every repository factory
+   */
+  @Bean
+  @ConditionalOnProperty("bookworm.server-timing.enabled")
+  public static BeanPostProcessor repositoryTimingPostProcessor() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+          factoryBean.addRepositoryFactoryCustomizer(
+              factory ->
+                  factory.addInvocationListener(
+                      invocation ->
+                          RequestTimings.record(
+                              Stage.DB, invocation.getDuration(TimeUnit.NANOSECONDS))));
+        }
+        return bean;
+      }
+    };
+  }
+
+  /**
+   * Jackson converter of Spring MVC adding the time spent writing JSON responses to the
+   * serialisation stage of the current request
+   *
+   * @param objectMapper object mapper configured by Spring Boot
+   * @return converter replacing the default one
+   */
+  @Bean
+  @ConditionalOnProperty("bookworm.server-timing.enabled")
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+      ObjectMapper objectMapper) {
+    return new MappingJackson2HttpMessageConverter(objectMapper) {
+      @Override
+      protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+          throws IOException {
+        long start = System.nanoTime();
+        try {
+          super.writeInternal(object, type, outputMessage);
+        } finally {
+          RequestTimings.record(Stage.SERIALIZE, System.nanoTime() - start);
+        }
+      }
+    };
+  }
+}
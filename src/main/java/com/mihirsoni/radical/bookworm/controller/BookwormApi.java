@@ -1,19 +1,86 @@
 package com.mihirsoni.radical.bookworm.controller;
 
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
 import com.mihirsoni.radical.bookworm.models.Book;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import java.util.List;
-import java.util.Set;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 public interface BookwormApi {
   @Operation(
       summary = "Fetch all bestsellers",
       description =
-          "Fetches all bestsellers from the New York Times API and the database and returns a unique set of books")
-  @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Success")})
-  Set<Book> fetchAllBestsellers();
+          "Fetches all bestsellers from the New York Times API and the database and returns a unique set of books. The JSON is encoded once per version of the bestsellers and sent gzipped when the client accepts gzip. Send the returned ETag as If-None-Match to get 304 while the bestsellers are unchanged")
+  @ApiResponses(
+      value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Success",
+            content =
+                @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = Book.class)))),
+        @ApiResponse(responseCode = "304", description = "Bestsellers not modified")
+      })
+  ResponseEntity<byte[]> fetchAllBestsellers(String acceptEncoding, WebRequest request);
+
+  @Operation(
+      summary = "Stream all bestsellers",
+      description =
+          "Streams all bestsellers as newline-delimited JSON, one book per line, flushed list by list as the lists are produced")
+  @ApiResponses(
+      value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Success",
+            content =
+                @Content(
+                    mediaType = "application/x-ndjson",
+                    schema = @Schema(implementation = Book.class)))
+      })
+  ResponseEntity<StreamingResponseBody> streamBestsellers();
+
+  @Operation(
+      summary = "Fetch a page of bestsellers",
+      description =
+          "Fetches one page of bestsellers filtered by list, author, price range and rating and sorted by the given key. Pass the nextCursor of a page as after to fetch the next page")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Success"),
+        @ApiResponse(responseCode = "400", description = "Invalid sort key, filters or cursor")
+      })
+  BestsellerPage fetchBestsellersPage(
+      String list,
+      String author,
+      Integer minPrice,
+      Integer maxPrice,
+      Integer minRating,
+      BestsellerQuery.Sort sort,
+      boolean descending,
+      String after,
+      int limit);
+
+  @Operation(
+      summary = "Fetch bestsellers of one list",
+      description =
+          "Fetches the bestsellers of one list, by its encoded name, from the New York Times API and the database")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Success"),
+        @ApiResponse(responseCode = "404", description = "No list with this name")
+      })
+  List<Book> fetchBestsellersOfList(String encodedListName);
 
   @Operation(
       summary = "Adds a book to favourite list",
@@ -37,14 +104,56 @@ public interface BookwormApi {
   void updateRatingAndPrice(Book book);
 
   @Operation(
-      summary = "Fetch all favourite books",
-      description = "Fetches all favourite books from the database")
+      summary = "Adds several books to favourite list",
+      description =
+          "Adds books to favourite list in one transaction and returns what was done with every book")
   @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Success")})
-  List<Book> getFavouriteList();
+  List<BulkOutcome> addAllToFavourite(List<Book> books);
 
   @Operation(
-      summary = "Purges the database",
-      description = "Purges the database to reset user experience")
+      summary = "Removes several books from favourite list",
+      description =
+          "Removes books from favourite list in one transaction and returns what was done with every book")
   @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Success")})
-  void purgeDatabase();
+  List<BulkOutcome> removeAllFromFavourite(List<Book> books);
+
+  @Operation(
+      summary = "Updates rating and price of several books",
+      description =
+          "Updates rating and price of books in one transaction and returns what was done with every book")
+  @ApiResponses(value = {@ApiResponse(responseCode = "200", description = "Success")})
+  List<BulkOutcome> updateAllRatingsAndPrices(List<Book> books);
+
+  @Operation(
+      summary = "Fetch favourite books",
+      description =
+          "Fetches favourite books from the database in ISBN order, all of them unless limit is given. With limit, one page is returned and a Link header with rel=next points to the next page while there is one. Pass the ISBN of the last book of a page as after to fetch the next page. Send the returned ETag as If-None-Match to get 304 while the favourites are unchanged")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Success"),
+        @ApiResponse(responseCode = "304", description = "Favourites not modified")
+      })
+  ResponseEntity<List<FavouriteBook>> getFavouriteList(
+      String after, Integer limit, WebRequest request);
+
+  @Operation(
+      summary = "Purges the database",
+      description =
+          "Purges the database to reset user experience. With async=true the purge runs in the background and its job is returned, to poll on purge-jobs")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Success"),
+        @ApiResponse(responseCode = "202", description = "Purge job submitted")
+      })
+  ResponseEntity<PurgeJob> purgeDatabase(boolean async);
+
+  @Operation(
+      summary = "Fetch status of a purge job",
+      description = "Fetches the status of a purge of the database submitted with async=true")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Success"),
+        @ApiResponse(responseCode = "404", description = "Unknown purge job")
+      })
+  PurgeJob getPurgeJob(String jobId);
 }
@@ -1,13 +1,30 @@
 package com.mihirsoni.radical.bookworm.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.dto.FavouritePage;
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
 import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache.EncodedBestsellers;
 import com.mihirsoni.radical.bookworm.service.BookwormService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
-import java.util.Set;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @Tag(
     name = "Bookworm API",
@@ -20,12 +37,78 @@ import org.springframework.web.bind.annotation.*;
 public class BookwormController implements BookwormApi {
 
   private final BookwormService service;
+  private final ObjectMapper objectMapper;
 
   @Override
   @GetMapping("/get-all-bestsellers")
-  public Set<Book> fetchAllBestsellers() {
+  public ResponseEntity<byte[]> fetchAllBestsellers(
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+      WebRequest request) {
     log.info("Request received to fetch all bestsellers from New York Times API");
-    return service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    boolean gzip = acceptsGzip(acceptEncoding);
+    EncodedBestsellers bestsellers = service.fetchEncodedBestsellers();
+    if (request.checkNotModified(bestsellers.eTag() + (gzip ? "-gzip" : ""))) {
+      return null;
+    }
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(bestsellers.gzip());
+    }
+    return response.body(bestsellers.json());
+  }
+
+  @Override
+  @GetMapping("/stream-bestsellers")
+  public ResponseEntity<StreamingResponseBody> streamBestsellers() {
+    log.info("Request received to stream all bestsellers from New York Times API");
+    StreamingResponseBody body =
+        out -> {
+          JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+          generator.setRootValueSeparator(null);
+          service.streamBestsellers(
+              books -> {
+                try {
+                  for (Book book : books) {
+                    generator.writeObject(book);
+                    generator.writeRaw('\n');
+                  }
+                  generator.flush();
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+          generator.close();
+        };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  @Override
+  @GetMapping("/get-bestsellers-page")
+  public BestsellerPage fetchBestsellersPage(
+      @RequestParam(required = false) String list,
+      @RequestParam(required = false) String author,
+      @RequestParam(required = false) Integer minPrice,
+      @RequestParam(required = false) Integer maxPrice,
+      @RequestParam(required = false) Integer minRating,
+      @RequestParam(required = false) BestsellerQuery.Sort sort,
+      @RequestParam(defaultValue = "false") boolean descending,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "20") int limit) {
+    BestsellerQuery query =
+        new BestsellerQuery(
+            list, author, minPrice, maxPrice, minRating, sort, descending, after, limit);
+    log.info("Request received to fetch a page of bestsellers matching {}", query);
+    return service.queryBestsellers(query);
+  }
+
+  @Override
+  @GetMapping("/get-bestsellers/{encodedListName}")
+  public List<Book> fetchBestsellersOfList(@PathVariable String encodedListName) {
+    log.info("Request received to fetch bestsellers of list {}", encodedListName);
+    return service.fetchBestsellersOfList(encodedListName);
   }
 
   @Override
@@ -49,17 +132,97 @@ public class BookwormController implements BookwormApi {
     service.updateRatingAndPrice(book);
   }
 
+  @Override
+  @PostMapping("/bulk/add-to-favourites")
+  public List<BulkOutcome> addAllToFavourite(@RequestBody List<Book> books) {
+    log.info("Request received to add {} books to favourite list", books.size());
+    return service.addAllToFavourite(books);
+  }
+
+  @Override
+  @DeleteMapping("/bulk/remove-from-favourites")
+  public List<BulkOutcome> removeAllFromFavourite(@RequestBody List<Book> books) {
+    log.info("Request received to remove {} books from favourite list", books.size());
+    return service.removeAllFromFavourite(books);
+  }
+
+  @Override
+  @PutMapping("/bulk/update-rating-and-price")
+  public List<BulkOutcome> updateAllRatingsAndPrices(@RequestBody List<Book> books) {
+    log.info("Request received to update rating and price of {} books", books.size());
+    return service.updateAllRatingsAndPrices(books);
+  }
+
   @Override
   @GetMapping("/get-favourites")
-  public List<Book> getFavouriteList() {
-    log.info("Request received to fetch favourite list");
-    return service.getFavouriteList();
+  public ResponseEntity<List<FavouriteBook>> getFavouriteList(
+      @RequestParam(required = false) String after,
+      @RequestParam(required = false) Integer limit,
+      WebRequest request) {
+    log.info("Request received to fetch favourite list after ISBN {}", after);
+    if (request.checkNotModified(service.getFavouritesETag())) {
+      return null;
+    }
+    if (limit == null) {
+      return ResponseEntity.ok(service.getFavouriteList(after));
+    }
+    FavouritePage page = service.getFavouritePage(after, limit);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.nextCursor() != null) {
+      String next =
+          ServletUriComponentsBuilder.fromCurrentRequest()
+              .replaceQueryParam("after", page.nextCursor())
+              .replaceQueryParam("limit", limit)
+              .toUriString();
+      response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+    }
+    return response.body(page.books());
   }
 
   @Override
   @DeleteMapping("/purge-database")
-  public void purgeDatabase() {
+  public ResponseEntity<PurgeJob> purgeDatabase(
+      @RequestParam(defaultValue = "false") boolean async) {
     log.info("Request received to purge database");
-    service.purgeDatabase();
+    if (!async) {
+      service.purgeDatabase();
+      return ResponseEntity.ok().build();
+    }
+    PurgeJob job = service.purgeDatabaseAsync();
+    return ResponseEntity.accepted()
+        .location(URI.create("/api/v1/books/purge-jobs/" + job.id()))
+        .body(job);
+  }
+
+  @Override
+  @GetMapping("/purge-jobs/{jobId}")
+  public PurgeJob getPurgeJob(@PathVariable String jobId) {
+    log.info("Request received to fetch status of purge job {}", jobId);
+    return service.getPurgeJob(jobId);
+  }
+
+  /**
+   * @param acceptEncoding Accept-Encoding header of the request
+   * @return true if the client accepts gzip, false if it does not or gives it a zero weight
+   */
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.trim().split(";");
+      String name = parameters[0].trim();
+      if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+        continue;
+      }
+      for (int i = 1; i < parameters.length; i++) {
+        String parameter = parameters[i].trim();
+        if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
   }
 }
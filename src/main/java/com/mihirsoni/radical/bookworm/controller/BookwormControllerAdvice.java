@@ -1,12 +1,33 @@
 package com.mihirsoni.radical.bookworm.controller;
 
 import com.mihirsoni.radical.bookworm.dto.ErrorDto;
+import com.mihirsoni.radical.bookworm.dto.InvalidBestsellerQueryException;
+import com.mihirsoni.radical.bookworm.service.BestsellerListNotFoundException;
+import com.mihirsoni.radical.bookworm.service.PurgeJobNotFoundException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @ControllerAdvice
 public class BookwormControllerAdvice {
+  @ExceptionHandler({BestsellerListNotFoundException.class, PurgeJobNotFoundException.class})
+  public ResponseEntity<ErrorDto> handleNotFound(RuntimeException e) {
+    ErrorDto errorDto = new ErrorDto(e.getMessage());
+    errorDto.setCode("404");
+    return ResponseEntity.status(404).body(errorDto);
+  }
+
+  @ExceptionHandler({
+    InvalidBestsellerQueryException.class,
+    MethodArgumentTypeMismatchException.class
+  })
+  public ResponseEntity<ErrorDto> handleBadRequest(Exception e) {
+    ErrorDto errorDto = new ErrorDto(e.getMessage());
+    errorDto.setCode("400");
+    return ResponseEntity.status(400).body(errorDto);
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<ErrorDto> handleException(Exception e) {
     ErrorDto errorDto = new ErrorDto(e.getMessage());
@@ -0,0 +1,213 @@
+package com.mihirsoni.radical.bookworm.controller;
+
+import com.mihirsoni.radical.bookworm.service.RequestTimings;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Breaks each API request down into the stages of the bestseller pipeline it went through, see
+ * {@link RequestTimings}.<br>
+ * When enabled, the breakdown is sent as a <code>Server-Timing</code> header, set right before the
+ * first byte of the body goes out so the body is never buffered. It holds the stages finished by
+ * then, and its total is the time to the first byte. Requests slower than the slow request
+ * threshold are logged with their full breakdown, including serialisation done while writing.<br>
+ * Streamed bestsellers are left alone, and so is any body written after an async request returns.
+ */
+@Slf4j
+public class ServerTimingFilter extends OncePerRequestFilter {
+  static final String SERVER_TIMING = "Server-Timing";
+  static final String TIMING_ALLOW_ORIGIN = "Timing-Allow-Origin";
+
+  private final boolean headerEnabled;
+  private final Duration slowRequestThreshold;
+
+  /**
+   * @param headerEnabled true to send the <code>Server-Timing</code> header
+   * @param slowRequestThreshold requests taking at least this long are logged, zero to log none
+   */
+  public ServerTimingFilter(boolean headerEnabled, Duration slowRequestThreshold) {
+    this.headerEnabled = headerEnabled;
+    this.slowRequestThreshold = slowRequestThreshold;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return (!headerEnabled && !isSlowRequestLogEnabled())
+        || !path.startsWith("/api/")
+        || path.endsWith("/stream-bestsellers");
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    RequestTimings timings = RequestTimings.start();
+    long start = System.nanoTime();
+    ServerTimingResponse timed =
+        headerEnabled ? new ServerTimingResponse(response, timings, start) : null;
+    try {
+      filterChain.doFilter(request, timed == null ? response : timed);
+    } finally {
+      long total = System.nanoTime() - start;
+      RequestTimings.end();
+      if (timed != null) {
+        if (request.isAsyncStarted()) {
+          timed.skipHeader();
+        } else {
+          timed.addHeader();
+        }
+      }
+      if (isSlowRequestLogEnabled() && total >= slowRequestThreshold.toNanos()) {
+        log.warn(
+            "Slow request {} {} took {} ms: {}",
+            request.getMethod(),
+            request.getRequestURI(),
+            total / 1_000_000,
+            timings);
+      }
+    }
+  }
+
+  private boolean isSlowRequestLogEnabled() {
+    return slowRequestThreshold != null && !slowRequestThreshold.isZero();
+  }
+
+  /** Response adding the <code>Server-Timing</code> header once, before its body is written */
+  private static class ServerTimingResponse extends HttpServletResponseWrapper {
+    private final RequestTimings timings;
+    private final long start;
+    private boolean headerDone;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    ServerTimingResponse(HttpServletResponse response, RequestTimings timings, long start) {
+      super(response);
+      this.timings = timings;
+      this.start = start;
+    }
+
+    void addHeader() {
+      if (headerDone) {
+        return;
+      }
+      headerDone = true;
+      if (!isCommitted()) {
+        setHeader(SERVER_TIMING, timings.toServerTiming(System.nanoTime() - start));
+        setHeader(TIMING_ALLOW_ORIGIN, "*");
+      }
+    }
+
+    void skipHeader() {
+      headerDone = true;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        ServletOutputStream body = super.getOutputStream();
+        outputStream =
+            new ServletOutputStream() {
+              @Override
+              public void write(int b) throws IOException {
+                addHeader();
+                body.write(b);
+              }
+
+              @Override
+              public void write(byte[] b, int off, int len) throws IOException {
+                addHeader();
+                body.write(b, off, len);
+              }
+
+              @Override
+              public void flush() throws IOException {
+                addHeader();
+                body.flush();
+              }
+
+              @Override
+              public void close() throws IOException {
+                addHeader();
+                body.close();
+              }
+
+              @Override
+              public boolean isReady() {
+                return body.isReady();
+              }
+
+              @Override
+              public void setWriteListener(WriteListener writeListener) {
+                body.setWriteListener(writeListener);
+              }
+            };
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        PrintWriter body = super.getWriter();
+        writer =
+            new PrintWriter(
+                new Writer() {
+                  @Override
+                  public void write(char[] cbuf, int off, int len) {
+                    addHeader();
+                    body.write(cbuf, off, len);
+                  }
+
+                  @Override
+                  public void flush() {
+                    addHeader();
+                    body.flush();
+                  }
+
+                  @Override
+                  public void close() {
+                    addHeader();
+                    body.close();
+                  }
+                });
+      }
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      addHeader();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      addHeader();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      addHeader();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      addHeader();
+      super.sendRedirect(location);
+    }
+  }
+}
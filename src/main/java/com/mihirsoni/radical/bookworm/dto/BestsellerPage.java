@@ -0,0 +1,13 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.util.List;
+
+/**
+ * One page of bestsellers matching a query
+ *
+ * @param books bestsellers of the page, in sort order
+ * @param total number of bestsellers matching the query across all pages
+ * @param nextCursor value of <code>after</code> for the next page, null on the last page
+ */
+public record BestsellerPage(List<Book> books, int total, String nextCursor) {}
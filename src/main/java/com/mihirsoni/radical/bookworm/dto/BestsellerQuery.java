@@ -0,0 +1,53 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+/**
+ * Filters, sort order and page of a bestseller query. Filters left null match every book
+ *
+ * @param list encoded name of the list to return
+ * @param author text the author must contain, ignoring case
+ * @param minPrice lowest price to return
+ * @param maxPrice highest price to return
+ * @param minRating lowest rating to return
+ * @param sort sort key, {@link Sort#RANK} if null
+ * @param descending true to sort from the highest to the lowest key
+ * @param after ISBN of the last book of the previous page, null for the first page
+ * @param limit maximum number of books of the page, between 1 and {@value #MAX_LIMIT}
+ * @throws InvalidBestsellerQueryException if a price or rating filter is negative or the price
+ *     range is empty
+ */
+public record BestsellerQuery(
+    String list,
+    String author,
+    Integer minPrice,
+    Integer maxPrice,
+    Integer minRating,
+    Sort sort,
+    boolean descending,
+    String after,
+    int limit) {
+  public static final int MAX_LIMIT = 100;
+
+  public enum Sort {
+    RANK,
+    TITLE,
+    AUTHOR,
+    PRICE,
+    RATING
+  }
+
+  public BestsellerQuery {
+    if ((minPrice != null && minPrice < 0)
+        || (maxPrice != null && maxPrice < 0)
+        || (minRating != null && minRating < 0)) {
+      throw new InvalidBestsellerQueryException("Price and rating filters must not be negative");
+    }
+    if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+      throw new InvalidBestsellerQueryException(
+          "minPrice " + minPrice + " is higher than maxPrice " + maxPrice);
+    }
+    if (sort == null) {
+      sort = Sort.RANK;
+    }
+    limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+  }
+}
@@ -0,0 +1,28 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+/**
+ * Outcome of one book of a bulk request
+ *
+ * @param isbn ISBN of the book
+ * @param status what was done with the book
+ */
+public record BulkOutcome(String isbn, Status status) {
+  public enum Status {
+    /** Book was stored as favourite */
+    ADDED,
+    /** Book was already stored and is now marked as favourite */
+    MARKED_FAVOURITE,
+    /** Book was removed from the database */
+    REMOVED,
+    /** Book has a changed rating/price, so it was kept and unmarked as favourite */
+    UNMARKED_FAVOURITE,
+    /** Rating and price of a stored book were updated */
+    UPDATED,
+    /** Book was stored with its rating and price */
+    CREATED,
+    /** Book does not exist in the database, nothing was done */
+    NOT_FOUND,
+    /** Book has no ISBN, nothing was done */
+    INVALID
+  }
+}
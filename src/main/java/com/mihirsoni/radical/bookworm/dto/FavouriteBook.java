@@ -0,0 +1,38 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+
+/**
+ * Read-only view of a favourite book, selected straight into this record instead of loading a
+ * managed {@link Book}. Serialised with the same properties as {@link Book}
+ */
+public record FavouriteBook(
+    String isbn,
+    String title,
+    String author,
+    int rating,
+    String imageUrl,
+    boolean favourite,
+    int price,
+    String listName,
+    String encodedListName,
+    boolean ratingPriceChanged) {
+
+  /**
+   * @param book book to view
+   * @return read-only view of the book
+   */
+  public static FavouriteBook of(Book book) {
+    return new FavouriteBook(
+        book.getIsbn(),
+        book.getTitle(),
+        book.getAuthor(),
+        book.getRating(),
+        book.getImageUrl(),
+        book.isFavourite(),
+        book.getPrice(),
+        book.getListName(),
+        book.getEncodedListName(),
+        book.isRatingPriceChanged());
+  }
+}
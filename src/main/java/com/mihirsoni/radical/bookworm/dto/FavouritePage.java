@@ -0,0 +1,11 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+import java.util.List;
+
+/**
+ * One page of the favourite list
+ *
+ * @param books favourite books of the page, in ISBN order
+ * @param nextCursor value of <code>after</code> for the next page, null on the last page
+ */
+public record FavouritePage(List<FavouriteBook> books, String nextCursor) {}
@@ -0,0 +1,8 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+/** Thrown when a bestseller query has contradicting filters or a cursor that is not a bestseller */
+public class InvalidBestsellerQueryException extends RuntimeException {
+  public InvalidBestsellerQueryException(String message) {
+    super(message);
+  }
+}
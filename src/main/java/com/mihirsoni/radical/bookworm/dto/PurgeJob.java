@@ -0,0 +1,40 @@
+package com.mihirsoni.radical.bookworm.dto;
+
+import java.time.Instant;
+
+/**
+ * Status of a purge of the database run in the background
+ *
+ * @param id id of the job, used to poll its status
+ * @param status whether the purge is still running, succeeded or failed
+ * @param startedAt time the purge was submitted
+ * @param finishedAt time the purge finished, null while it is running
+ * @param deletedBooks number of books deleted, 0 until the purge succeeds
+ * @param error cause of a failed purge, null otherwise
+ */
+public record PurgeJob(
+    String id,
+    Status status,
+    Instant startedAt,
+    Instant finishedAt,
+    int deletedBooks,
+    String error) {
+
+  public enum Status {
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+  }
+
+  public static PurgeJob running(String id, Instant startedAt) {
+    return new PurgeJob(id, Status.RUNNING, startedAt, null, 0, null);
+  }
+
+  public PurgeJob succeeded(int deletedBooks, Instant finishedAt) {
+    return new PurgeJob(id, Status.SUCCEEDED, startedAt, finishedAt, deletedBooks, null);
+  }
+
+  public PurgeJob failed(String error, Instant finishedAt) {
+    return new PurgeJob(id, Status.FAILED, startedAt, finishedAt, 0, error);
+  }
+}
@@ -0,0 +1,375 @@
+package com.mihirsoni.radical.bookworm.models;
+
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery.Sort;
+import com.mihirsoni.radical.bookworm.dto.InvalidBestsellerQueryException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, pre-built view of the bestsellers served to clients: the books of a snapshot with
+ * their stored version where one exists, keyed by ISBN and grouped by encoded list name.<br>
+ * Favourite and rating/price changes are applied with {@link #withOverride(Book)} and {@link
+ * #withoutOverride(String)}, which copy the index with a single book replaced instead of rebuilding
+ * it from the snapshot and the database.<br>
+ * Queries are answered from sorted views of every list and of all books, sorted once per snapshot
+ * when the index is built. Copies made for a changed book carry the views over with only that book
+ * moved to its new position.<br>
+ * Every index gets a new version, so the version identifies the bestsellers served from it.
+ */
+public final class BestsellerIndex {
+  private static final Comparator<String> NULLS_LAST_IGNORE_CASE =
+      Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER);
+  private static final AtomicLong VERSIONS = new AtomicLong();
+  private static final SortedView EMPTY_VIEW = new SortedView(List.of(), Map.of());
+
+  private final long version = VERSIONS.incrementAndGet();
+
+  private final BestsellerSnapshot snapshot;
+  private final Map<String, Book> snapshotBooks;
+  private final Map<String, Book> byIsbn;
+  private final Map<String, List<Book>> byList;
+  private final Set<Book> books;
+  private final Map<ViewKey, SortedView> sortedViews;
+
+  private BestsellerIndex(
+      BestsellerSnapshot snapshot,
+      Map<String, Book> snapshotBooks,
+      Map<String, Book> byIsbn,
+      Map<String, List<Book>> byList,
+      Map<ViewKey, SortedView> sortedViews) {
+    this.snapshot = snapshot;
+    this.snapshotBooks = snapshotBooks;
+    this.byIsbn = Collections.unmodifiableMap(byIsbn);
+    this.byList = Collections.unmodifiableMap(byList);
+    this.books = Collections.unmodifiableSet(new LinkedHashSet<>(byIsbn.values()));
+    this.sortedViews = sortedViews;
+  }
+
+  /**
+   * Builds the index of a snapshot
+   *
+   * @param snapshot bestsellers as returned by New York Times API
+   * @param storedBooks books stored in the database, keyed by ISBN
+   * @return index of the snapshot with the stored version of books where one exists
+   */
+  public static BestsellerIndex build(BestsellerSnapshot snapshot, Map<String, Book> storedBooks) {
+    Map<String, Book> snapshotBooks = new LinkedHashMap<>();
+    Map<String, Book> byIsbn = new LinkedHashMap<>();
+    for (Book book : snapshot.books()) {
+      snapshotBooks.put(book.getIsbn(), book);
+      byIsbn.put(book.getIsbn(), storedBooks.getOrDefault(book.getIsbn(), book));
+    }
+    Map<String, List<Book>> byList = groupByList(byIsbn.values());
+    return new BestsellerIndex(
+        snapshot,
+        Collections.unmodifiableMap(snapshotBooks),
+        byIsbn,
+        byList,
+        sortViews(byIsbn.values(), byList));
+  }
+
+  /**
+   * Copies the index with the stored version of a book in place of the current one
+   *
+   * @param storedBook book as stored in the database
+   * @return new index, or this index if the book is not a bestseller of the snapshot
+   */
+  public BestsellerIndex withOverride(Book storedBook) {
+    Book current = byIsbn.get(storedBook.getIsbn());
+    if (current == null) {
+      return this;
+    }
+    return replace(current, storedBook);
+  }
+
+  /**
+   * Copies the index with the snapshot version of a book, used when its stored version is deleted
+   *
+   * @param isbn ISBN of the book
+   * @return new index, or this index if the book is not a bestseller of the snapshot
+   */
+  public BestsellerIndex withoutOverride(String isbn) {
+    Book current = byIsbn.get(isbn);
+    if (current == null) {
+      return this;
+    }
+    return replace(current, snapshotBooks.get(isbn));
+  }
+
+  /**
+   * Copies the index with the snapshot version of every book, used when the database is purged
+   *
+   * @return new index without stored versions
+   */
+  public BestsellerIndex withoutOverrides() {
+    return build(snapshot, Map.of());
+  }
+
+  /**
+   * @return version of this index, unique within the running application
+   */
+  public long version() {
+    return version;
+  }
+
+  public BestsellerSnapshot snapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return every bestseller, in snapshot order
+   */
+  public Set<Book> books() {
+    return books;
+  }
+
+  /**
+   * @param isbn ISBN of a book
+   * @return the bestseller with this ISBN, null if it is not a bestseller of the snapshot
+   */
+  public Book book(String isbn) {
+    return byIsbn.get(isbn);
+  }
+
+  /**
+   * @return encoded names of every list, in snapshot order
+   */
+  public Set<String> listNames() {
+    return byList.keySet();
+  }
+
+  /**
+   * @param encodedListName encoded name of a list
+   * @return bestsellers of the list, empty if there is no such list
+   */
+  public List<Book> list(String encodedListName) {
+    return byList.getOrDefault(encodedListName, List.of());
+  }
+
+  /**
+   * Returns one page of the bestsellers matching a query. The books are read from a pre-sorted view
+   * and only filtered per query, so a query never sorts
+   *
+   * @param query filters, sort order and page
+   * @return page of matching bestsellers
+   * @throws InvalidBestsellerQueryException if the cursor is not a book of the sorted view
+   */
+  public BestsellerPage query(BestsellerQuery query) {
+    SortedView view = sortedViews.getOrDefault(new ViewKey(query.list(), query.sort()), EMPTY_VIEW);
+    List<Book> sorted = view.books();
+    int size = sorted.size();
+    int step = query.descending() ? -1 : 1;
+    int first = query.descending() ? size - 1 : 0;
+
+    int start = first;
+    if (query.after() != null) {
+      Integer position = view.positions().get(query.after());
+      if (position == null) {
+        throw new InvalidBestsellerQueryException("Unknown cursor " + query.after());
+      }
+      start = position + step;
+    }
+    String author = query.author() == null ? null : query.author().toLowerCase(Locale.ROOT);
+
+    List<Book> page = new ArrayList<>(query.limit());
+    int total = 0;
+    boolean hasMore = false;
+    for (int i = first; i >= 0 && i < size; i += step) {
+      Book book = sorted.get(i);
+      if (!matches(book, query, author)) {
+        continue;
+      }
+      total++;
+      boolean afterCursor = query.descending() ? i <= start : i >= start;
+      if (afterCursor) {
+        if (page.size() < query.limit()) {
+          page.add(book);
+        } else {
+          hasMore = true;
+        }
+      }
+    }
+    String nextCursor = hasMore ? page.get(page.size() - 1).getIsbn() : null;
+    return new BestsellerPage(List.copyOf(page), total, nextCursor);
+  }
+
+  private static boolean matches(Book book, BestsellerQuery query, String author) {
+    return (author == null
+            || (book.getAuthor() != null
+                && book.getAuthor().toLowerCase(Locale.ROOT).contains(author)))
+        && (query.minPrice() == null || book.getPrice() >= query.minPrice())
+        && (query.maxPrice() == null || book.getPrice() <= query.maxPrice())
+        && (query.minRating() == null || book.getRating() >= query.minRating());
+  }
+
+  /**
+   * Sorts the books of every list and all books by every sort key
+   *
+   * @param books every bestseller, in snapshot order
+   * @param byList bestsellers grouped by encoded list name
+   * @return sorted views keyed by list, a null list for all books, and sort key
+   */
+  private static Map<ViewKey, SortedView> sortViews(
+      Collection<Book> books, Map<String, List<Book>> byList) {
+    Map<ViewKey, SortedView> views = new HashMap<>();
+    for (Sort sort : Sort.values()) {
+      views.put(new ViewKey(null, sort), sortedView(books, sort));
+      byList.forEach(
+          (listName, list) -> {
+            if (listName != null) {
+              views.put(new ViewKey(listName, sort), sortedView(list, sort));
+            }
+          });
+    }
+    return Collections.unmodifiableMap(views);
+  }
+
+  /**
+   * Sorts books by a sort key. Ties are broken by ISBN so the order is total and cursors are stable
+   *
+   * @param books books in snapshot order
+   * @param sort sort key
+   * @return sorted view with the position of every book
+   */
+  private static SortedView sortedView(Collection<Book> books, Sort sort) {
+    List<Book> sorted = new ArrayList<>(books);
+    Comparator<Book> comparator = comparator(sort);
+    if (comparator != null) {
+      sorted.sort(comparator);
+    }
+    Map<String, Integer> positions = new HashMap<>(sorted.size() * 2);
+    for (int i = 0; i < sorted.size(); i++) {
+      positions.put(sorted.get(i).getIsbn(), i);
+    }
+    return new SortedView(List.copyOf(sorted), positions);
+  }
+
+  /**
+   * @param sort sort key
+   * @return order of the sort key with ties broken by ISBN, null to keep the snapshot order
+   */
+  private static Comparator<Book> comparator(Sort sort) {
+    Comparator<Book> comparator =
+        switch (sort) {
+          case RANK -> null;
+          case TITLE -> Comparator.comparing(Book::getTitle, NULLS_LAST_IGNORE_CASE);
+          case AUTHOR -> Comparator.comparing(Book::getAuthor, NULLS_LAST_IGNORE_CASE);
+          case PRICE -> Comparator.comparingInt(Book::getPrice);
+          case RATING -> Comparator.comparingInt(Book::getRating);
+        };
+    return comparator == null
+        ? null
+        : comparator.thenComparing(Book::getIsbn, Comparator.nullsLast(String::compareTo));
+  }
+
+  private record ViewKey(String list, Sort sort) {}
+
+  private record SortedView(List<Book> books, Map<String, Integer> positions) {
+    /**
+     * Copies the view with one book replaced, moving it to the position of its new version
+     * instead of sorting again. In snapshot order a kept book keeps its place and an added one is
+     * appended, as in the lists of the index
+     *
+     * @param current book to take out, ignored if it is not in the view
+     * @param replacement book to put in, null to only take out the current one
+     * @param comparator order of the view, null for snapshot order
+     * @return view with the book replaced
+     */
+    SortedView replace(Book current, Book replacement, Comparator<Book> comparator) {
+      List<Book> list = new ArrayList<>(books);
+      Integer position = positions.get(current.getIsbn());
+      if (position != null && replacement != null && comparator == null) {
+        list.set(position, replacement);
+        return new SortedView(List.copyOf(list), positions);
+      }
+      int changedFrom = list.size();
+      if (position != null) {
+        list.remove((int) position);
+        changedFrom = position;
+      }
+      Map<String, Integer> replacedPositions = new HashMap<>(positions);
+      replacedPositions.remove(current.getIsbn());
+      if (replacement != null) {
+        int insertAt = list.size();
+        if (comparator != null) {
+          int found = Collections.binarySearch(list, replacement, comparator);
+          insertAt = found >= 0 ? found : -found - 1;
+        }
+        list.add(insertAt, replacement);
+        changedFrom = Math.min(changedFrom, insertAt);
+      }
+      for (int i = changedFrom; i < list.size(); i++) {
+        replacedPositions.put(list.get(i).getIsbn(), i);
+      }
+      return new SortedView(List.copyOf(list), replacedPositions);
+    }
+  }
+
+  private BestsellerIndex replace(Book current, Book replacement) {
+    Map<String, Book> replacedByIsbn = new LinkedHashMap<>(byIsbn);
+    replacedByIsbn.put(replacement.getIsbn(), replacement);
+
+    Map<String, List<Book>> replacedByList = new LinkedHashMap<>(byList);
+    Map<ViewKey, SortedView> replacedViews = new HashMap<>(sortedViews);
+    for (Sort sort : Sort.values()) {
+      ViewKey key = new ViewKey(null, sort);
+      replacedViews.put(key, sortedViews.get(key).replace(current, replacement, comparator(sort)));
+    }
+    Set<String> listNames =
+        new LinkedHashSet<>(
+            Arrays.asList(current.getEncodedListName(), replacement.getEncodedListName()));
+    for (String listName : listNames) {
+      List<Book> list = new ArrayList<>(byList.getOrDefault(listName, List.of()));
+      int position = list.indexOf(current);
+      boolean keep = Objects.equals(listName, replacement.getEncodedListName());
+      if (position >= 0 && keep) {
+        list.set(position, replacement);
+      } else {
+        list.remove(current);
+        if (keep) {
+          list.add(replacement);
+        }
+      }
+      replacedByList.put(listName, List.copyOf(list));
+      if (listName != null) {
+        for (Sort sort : Sort.values()) {
+          ViewKey key = new ViewKey(listName, sort);
+          replacedViews.put(
+              key,
+              sortedViews
+                  .getOrDefault(key, EMPTY_VIEW)
+                  .replace(current, keep ? replacement : null, comparator(sort)));
+        }
+      }
+    }
+    return new BestsellerIndex(
+        snapshot,
+        snapshotBooks,
+        replacedByIsbn,
+        replacedByList,
+        Collections.unmodifiableMap(replacedViews));
+  }
+
+  private static Map<String, List<Book>> groupByList(Collection<Book> books) {
+    Map<String, List<Book>> groups = new LinkedHashMap<>();
+    for (Book book : books) {
+      groups.computeIfAbsent(book.getEncodedListName(), name -> new ArrayList<>()).add(book);
+    }
+    groups.replaceAll((name, list) -> List.copyOf(list));
+    return groups;
+  }
+}
@@ -0,0 +1,30 @@
+package com.mihirsoni.radical.bookworm.models;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable view of the bestsellers parsed from one successful New York Times API call
+ *
+ * @param books bestsellers as returned by New York Times, before any database overrides, in
+ *     response order
+ * @param fetchedAt moment the response was received
+ */
+public record BestsellerSnapshot(Set<Book> books, Instant fetchedAt) {
+  public BestsellerSnapshot {
+    books = Collections.unmodifiableSet(new LinkedHashSet<>(books));
+  }
+
+  /**
+   * checks if the snapshot is older than the given time to live
+   *
+   * @param ttl time to live of a snapshot
+   * @return true if the snapshot should be refreshed
+   */
+  public boolean isStale(Duration ttl) {
+    return fetchedAt.plus(ttl).isBefore(Instant.now());
+  }
+}
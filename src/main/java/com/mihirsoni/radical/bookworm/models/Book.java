@@ -1,20 +1,40 @@
 package com.mihirsoni.radical.bookworm.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.Persistable;
 
 @Entity
-@Table(name = "books")
-@Builder
+@Table(
+    name = "books",
+    indexes = @Index(name = "idx_books_favourite_isbn", columnList = "isFavourite, isbn"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@Builder(toBuilder = true)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class Book {
+public class Book implements Persistable<String> {
+  /** second-level cache region of stored books, configured in <code>application.conf</code> */
+  public static final String CACHE_REGION = "books";
+
   @Id private String isbn;
   private String title;
   private String author;
@@ -26,6 +46,42 @@ public class Book {
   private String encodedListName;
   private boolean isRatingPriceChanged;
 
+  /** true once the book has been read from the database or persisted */
+  @Transient
+  @JsonIgnore
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private boolean stored;
+
+  /**
+   * ISBN is assigned by New York Times, so Spring Data cannot tell new books by a null id. Books
+   * that were not read from the database are persisted without first selecting them, which lets
+   * bulk inserts be batched
+   *
+   * @return ISBN
+   */
+  @JsonIgnore
+  @Override
+  public String getId() {
+    return isbn;
+  }
+
+  /**
+   * @return true if the book was neither read from the database nor persisted
+   */
+  @JsonIgnore
+  @Override
+  public boolean isNew() {
+    return !stored;
+  }
+
+  @PostLoad
+  @PrePersist
+  void markStored() {
+    stored = true;
+  }
+
   /**
    * checks if two objects are equal based on their ISBN
    *
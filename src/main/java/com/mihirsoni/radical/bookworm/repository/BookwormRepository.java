@@ -1,12 +1,43 @@
 package com.mihirsoni.radical.bookworm.repository;
 
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
 import com.mihirsoni.radical.bookworm.models.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 public interface BookwormRepository extends JpaRepository<Book, String> {
-  @Query("SELECT b FROM Book b WHERE b.isFavourite = true")
-  List<Book> findByFavourite();
+  /**
+   * Fetches one page of favourite books in ISBN order, read from the index on the favourite flag
+   *
+   * @param after ISBN of the last book of the previous page, empty for the first page
+   * @param limit maximum number of books to fetch
+   * @return favourite books with an ISBN after the given one
+   */
+  @Query(
+      "SELECT new com.mihirsoni.radical.bookworm.dto.FavouriteBook(b.isbn, b.title, b.author,"
+          + " b.rating, b.imageUrl, b.isFavourite, b.price, b.listName, b.encodedListName,"
+          + " b.isRatingPriceChanged)"
+          + " FROM Book b WHERE b.isFavourite = true AND b.isbn > :after ORDER BY b.isbn")
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<FavouriteBook> findFavourites(@Param("after") String after, Limit limit);
+
+  /**
+   * Deletes every book in one bulk statement, without loading them first. Hibernate evicts the
+   * cached books and invalidates cached queries of the table
+   *
+   * @return number of deleted books
+   */
+  @Modifying(clearAutomatically = true)
+  @Transactional
+  @Query("DELETE FROM Book b")
+  int deleteAllInBulk();
 }
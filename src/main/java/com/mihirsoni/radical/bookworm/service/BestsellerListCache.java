@@ -0,0 +1,128 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps one {@link BestsellerSnapshotCache} per New York Times list, so that every list is fetched
+ * from the current list endpoint and refreshed independently of the others.<br>
+ * Several lists can be refreshed at once, fanned out on a bounded fetch executor.
+ */
+@Slf4j
+public class BestsellerListCache {
+  private final Duration ttl;
+  private final Executor refreshExecutor;
+  private final Executor fetchExecutor;
+  private final ConcurrentMap<String, BestsellerSnapshotCache> caches = new ConcurrentHashMap<>();
+
+  public BestsellerListCache(Duration ttl, Executor refreshExecutor, Executor fetchExecutor) {
+    this.ttl = ttl;
+    this.refreshExecutor = refreshExecutor;
+    this.fetchExecutor = fetchExecutor;
+  }
+
+  /**
+   * Returns the cached snapshot of a list, see {@link BestsellerSnapshotCache#get}. Callers must
+   * only pass names of existing lists since every name gets its own cache
+   *
+   * @param encodedListName encoded name of the list
+   * @param loader fetches and parses a list from New York Times API, throws on failure
+   * @return snapshot of the list
+   */
+  public BestsellerSnapshot get(String encodedListName, Function<String, Set<Book>> loader) {
+    return cache(encodedListName).get(() -> loader.apply(encodedListName));
+  }
+
+  /**
+   * Refreshes the stale ones of several lists concurrently and combines them. A list that cannot
+   * be refreshed keeps its stale books. If a list has never been loaded, for instance because the
+   * per-minute quota ran out before its turn, loading fails rather than returning a snapshot
+   * missing that list. The lists that did load stay cached, so the next refresh only fetches the
+   * missing ones
+   *
+   * @param encodedListNames encoded names of the lists
+   * @param loader fetches and parses a list from New York Times API, throws on failure
+   * @return books of every list, in list order
+   * @throws IllegalStateException if any of the lists has never been loaded
+   */
+  public Set<Book> fetchAll(List<String> encodedListNames, Function<String, Set<Book>> loader) {
+    List<CompletableFuture<BestsellerSnapshot>> futures = refreshAll(encodedListNames, loader);
+
+    Set<Book> books = new LinkedHashSet<>();
+    List<String> missingLists = new ArrayList<>();
+    for (int i = 0; i < futures.size(); i++) {
+      BestsellerSnapshot snapshot = futures.get(i).join();
+      if (snapshot != null) {
+        books.addAll(snapshot.books());
+      } else {
+        missingLists.add(encodedListNames.get(i));
+      }
+    }
+    if (!missingLists.isEmpty()) {
+      throw new IllegalStateException(
+          "Lists " + missingLists + " of " + encodedListNames + " could not be loaded");
+    }
+    return books;
+  }
+
+  /**
+   * Refreshes the stale ones of several lists concurrently, like {@link #fetchAll}, and passes on
+   * every list on the calling thread as soon as it is loaded instead of waiting for all of them
+   *
+   * @param encodedListNames encoded names of the lists
+   * @param loader fetches and parses a list from New York Times API, throws on failure
+   * @param onList receives the snapshot of every list that could be loaded, in completion order
+   */
+  public void fetchEach(
+      List<String> encodedListNames,
+      Function<String, Set<Book>> loader,
+      Consumer<BestsellerSnapshot> onList) {
+    List<CompletableFuture<BestsellerSnapshot>> pending =
+        new ArrayList<>(refreshAll(encodedListNames, loader));
+    while (!pending.isEmpty()) {
+      CompletableFuture.anyOf(pending.toArray(CompletableFuture[]::new)).join();
+      List<CompletableFuture<BestsellerSnapshot>> done =
+          pending.stream().filter(CompletableFuture::isDone).toList();
+      pending.removeAll(done);
+      for (CompletableFuture<BestsellerSnapshot> future : done) {
+        BestsellerSnapshot snapshot = future.join();
+        if (snapshot != null) {
+          onList.accept(snapshot);
+        }
+      }
+    }
+  }
+
+  private List<CompletableFuture<BestsellerSnapshot>> refreshAll(
+      List<String> encodedListNames, Function<String, Set<Book>> loader) {
+    return encodedListNames.stream()
+        .map(
+            listName ->
+                CompletableFuture.supplyAsync(
+                        () -> cache(listName).refreshIfStale(() -> loader.apply(listName)),
+                        fetchExecutor)
+                    .exceptionally(
+                        e -> {
+                          log.warn("Could not load list {}: {}", listName, e.toString());
+                          return cache(listName).getIfPresent();
+                        }))
+        .toList();
+  }
+
+  private BestsellerSnapshotCache cache(String encodedListName) {
+    return caches.computeIfAbsent(
+        encodedListName, listName -> new BestsellerSnapshotCache(ttl, refreshExecutor));
+  }
+}
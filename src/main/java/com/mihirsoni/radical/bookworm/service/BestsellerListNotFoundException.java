@@ -0,0 +1,8 @@
+package com.mihirsoni.radical.bookworm.service;
+
+/** Thrown when a bestseller list is requested that the current bestsellers do not contain */
+public class BestsellerListNotFoundException extends RuntimeException {
+  public BestsellerListNotFoundException(String encodedListName) {
+    super("No bestseller list named " + encodedListName);
+  }
+}
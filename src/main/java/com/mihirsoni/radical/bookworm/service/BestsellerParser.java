@@ -0,0 +1,221 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams New York Times API responses into book objects.<br>
+ * Only the fields a {@link Book} is built from are read, everything else (buy links, descriptions,
+ * review links...) is skipped token by token without being materialised.
+ */
+@Component
+@AllArgsConstructor
+public class BestsellerParser {
+  private final ObjectMapper objectMapper;
+
+  /**
+   * Parses a full-overview response into book objects
+   *
+   * @param inputStream full-overview response body
+   * @return Set of books across all lists of the response, in response order
+   * @throws IOException if the response is "un-parse-able"
+   */
+  public Set<Book> parseFullOverview(InputStream inputStream) throws IOException {
+    Set<Book> books = new LinkedHashSet<>();
+    parseFullOverview(inputStream, books::add);
+    return books;
+  }
+
+  /**
+   * Parses a full-overview response and hands every book to the sink as soon as its list is read
+   *
+   * @param inputStream full-overview response body
+   * @param sink consumer of parsed books
+   * @throws IOException if the response is "un-parse-able"
+   */
+  public void parseFullOverview(InputStream inputStream, Consumer<Book> sink) throws IOException {
+    parseFullOverviewLists(inputStream, books -> books.forEach(sink));
+  }
+
+  /**
+   * Parses a full-overview response and hands the books of every list to the sink as soon as the
+   * list is read, before the rest of the response is read
+   *
+   * @param inputStream full-overview response body
+   * @param listSink consumer of the parsed books of every list, in response order
+   * @throws IOException if the response is "un-parse-able"
+   */
+  public void parseFullOverviewLists(InputStream inputStream, Consumer<List<Book>> listSink)
+      throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected New York Times API response object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("results")) {
+          parseResults(parser, listSink);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses a response of the current list endpoint into book objects
+   *
+   * @param inputStream current list response body
+   * @return Set of books of the list, in response order
+   * @throws IOException if the response is "un-parse-able"
+   */
+  public Set<Book> parseCurrentList(InputStream inputStream) throws IOException {
+    Set<Book> books = new LinkedHashSet<>();
+    try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected New York Times API response object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("results")) {
+          books.addAll(parseList(parser));
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return books;
+  }
+
+  /**
+   * Parses the results object of a full-overview response, parser positioned on its start
+   *
+   * @param parser JSON parser
+   * @param listSink consumer of the parsed books of every list
+   * @throws IOException if the response is "un-parse-able"
+   */
+  private void parseResults(JsonParser parser, Consumer<List<Book>> listSink)
+      throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      if (parser.nextToken() == JsonToken.START_ARRAY && field.equals("lists")) {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+          if (token == JsonToken.START_OBJECT) {
+            listSink.accept(parseList(parser));
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Parses one list object, parser positioned on its start. Lists of a full-overview response and
+   * the results of a current list response share this shape. Books are returned once the whole
+   * list has been read since the list name may come after the books
+   *
+   * @param parser JSON parser
+   * @return books of the list, in response order
+   * @throws IOException if the response is "un-parse-able"
+   */
+  private List<Book> parseList(JsonParser parser) throws IOException {
+    String listName = "";
+    String encodedListName = "";
+    List<Book> books = new ArrayList<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      switch (field) {
+        case "list_name" -> listName = parser.getValueAsString("");
+        case "list_name_encoded" -> encodedListName = parser.getValueAsString("");
+        case "books" -> {
+          if (token == JsonToken.START_ARRAY) {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+              if (token == JsonToken.START_OBJECT) {
+                books.add(parseBook(parser));
+              } else {
+                parser.skipChildren();
+              }
+            }
+          }
+        }
+        default -> parser.skipChildren();
+      }
+    }
+    for (Book book : books) {
+      book.setListName(listName);
+      book.setEncodedListName(encodedListName);
+    }
+    return books;
+  }
+
+  /**
+   * Builds book object from a book JSON object, parser positioned on its start. Generates random
+   * price and rating, 5-15 and 1-5 respectively
+   *
+   * @param parser JSON parser
+   * @return Book object without list name
+   * @throws IOException if the response is "un-parse-able"
+   */
+  private Book parseBook(JsonParser parser) throws IOException {
+    Book.BookBuilder builder =
+        Book.builder()
+            .isbn("")
+            .title("")
+            .author("")
+            .imageUrl("")
+            .isFavourite(false)
+            .isRatingPriceChanged(false)
+            .rating(generateRandomRating());
+    String price = "";
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      parser.nextToken();
+      switch (field) {
+        case "primary_isbn13" -> builder.isbn(parser.getValueAsString(""));
+        case "title" -> builder.title(parser.getValueAsString(""));
+        case "author" -> builder.author(parser.getValueAsString(""));
+        case "book_image" -> builder.imageUrl(parser.getValueAsString(""));
+        case "price" -> price = parser.getValueAsString("");
+        default -> parser.skipChildren();
+      }
+    }
+    return builder
+        .price(price.equals("0.00") ? generateRandomNumber() : Integer.parseInt(price))
+        .build();
+  }
+
+  /**
+   * Generates random rating between 1 and 5
+   *
+   * @return Random rating
+   */
+  private int generateRandomRating() {
+    return (int) (Math.random() * 5) + 1;
+  }
+
+  /**
+   * Generates random number between 5 and 20
+   *
+   * @return Random number
+   */
+  private int generateRandomNumber() {
+    return (int) (Math.random() * 15) + 5;
+  }
+}
@@ -0,0 +1,27 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes bestsellers from New York Times API on a timer, see {@link
+ * BookwormService#refreshBestsellers()}. Only created when <code>bookworm.nyt.refresh-enabled
+ * </code> is set, so tests and tools can start the application without calling New York Times
+ */
+@Component
+@ConditionalOnProperty("bookworm.nyt.refresh-enabled")
+public class BestsellerRefresher {
+  private final BookwormService service;
+
+  public BestsellerRefresher(BookwormService service) {
+    this.service = service;
+  }
+
+  @Scheduled(
+      initialDelayString = "${bookworm.nyt.refresh-initial-delay}",
+      fixedDelayString = "${bookworm.nyt.refresh-interval}")
+  public void refreshBestsellers() {
+    service.refreshBestsellers();
+  }
+}
@@ -0,0 +1,84 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.BestsellerIndex;
+import com.mihirsoni.radical.bookworm.service.RequestTimings.Stage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the JSON response of all bestsellers encoded for the current bestseller index, as plain and
+ * gzipped bytes, so that serving it needs neither Jackson nor compression.<br>
+ * The bytes are encoded once per version of the index, by the first request that sees the version.
+ */
+@Slf4j
+@Component
+public class BestsellerResponseCache {
+  private final ObjectMapper objectMapper;
+  private final BookwormMetrics metrics;
+  private final AtomicReference<EncodedBestsellers> encoded = new AtomicReference<>();
+
+  public BestsellerResponseCache(ObjectMapper objectMapper, BookwormMetrics metrics) {
+    this.objectMapper = objectMapper;
+    this.metrics = metrics;
+  }
+
+  /**
+   * JSON array of all bestsellers of one version of the bestseller index
+   *
+   * @param version version of the index the bytes were encoded from
+   * @param eTag entity tag of that version, so it always matches the bytes it is sent with
+   * @param json JSON bytes
+   * @param gzip gzipped JSON bytes
+   */
+  public record EncodedBestsellers(long version, String eTag, byte[] json, byte[] gzip) {}
+
+  /**
+   * Returns the encoded bestsellers of an index, encoding them if the index is not the one encoded
+   * last
+   *
+   * @param index bestseller index to serve
+   * @param eTag entity tag of the index
+   * @return encoded bestsellers of the index
+   */
+  public EncodedBestsellers get(BestsellerIndex index, String eTag) {
+    EncodedBestsellers current = encoded.get();
+    boolean hit = current != null && current.version() == index.version();
+    metrics.countCacheRequest("response", hit);
+    if (hit) {
+      return current;
+    }
+    EncodedBestsellers fresh = encode(index, eTag);
+    encoded.set(fresh);
+    return fresh;
+  }
+
+  private EncodedBestsellers encode(BestsellerIndex index, String eTag) {
+    long start = System.nanoTime();
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(index.books());
+      ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 4);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+        out.write(json);
+      }
+      log.info(
+          "Encoded {} bestsellers to {} bytes, {} bytes gzipped",
+          index.books().size(),
+          json.length,
+          gzip.size());
+      return new EncodedBestsellers(index.version(), eTag, json, gzip.toByteArray());
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode bestsellers", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not compress bestsellers", e);
+    } finally {
+      RequestTimings.record(Stage.SERIALIZE, System.nanoTime() - start);
+    }
+  }
+}
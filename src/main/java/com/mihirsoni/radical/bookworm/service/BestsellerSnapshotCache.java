@@ -0,0 +1,187 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the last good bestseller snapshot fetched from New York Times API.<br>
+ * Fresh snapshots are served straight from memory. Once a snapshot is older than the configured
+ * TTL it is still served while a single background refresh replaces it, so callers never wait on
+ * New York Times unless nothing has been fetched yet. Concurrent loads are coalesced into one call.
+ * <br>
+ * When a snapshot store is given, every new snapshot is persisted and the persisted one is loaded
+ * at startup, so a restart serves local data straight away and refreshes it in the background once
+ * it is stale.
+ */
+@Slf4j
+public class BestsellerSnapshotCache {
+  private static final String FULL_OVERVIEW = "full-overview";
+
+  private final Duration ttl;
+  private final Executor refreshExecutor;
+  private final BestsellerSnapshotStore store;
+
+  private final AtomicReference<BestsellerSnapshot> snapshot = new AtomicReference<>();
+  private final SingleFlight<String, BestsellerSnapshot> singleFlight = new SingleFlight<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  public BestsellerSnapshotCache(Duration ttl, Executor refreshExecutor) {
+    this(ttl, refreshExecutor, null);
+  }
+
+  public BestsellerSnapshotCache(
+      Duration ttl, Executor refreshExecutor, BestsellerSnapshotStore store) {
+    this.ttl = ttl;
+    this.refreshExecutor = refreshExecutor;
+    this.store = store;
+    if (store != null) {
+      store.load().ifPresent(snapshot::set);
+    }
+  }
+
+  /**
+   * Returns the cached snapshot, loading it synchronously if nothing is cached yet and scheduling a
+   * background refresh if the cached snapshot is stale
+   *
+   * @param loader fetches and parses bestsellers from New York Times API, throws on failure
+   * @return snapshot of the last successful fetch
+   */
+  public BestsellerSnapshot get(Supplier<Set<Book>> loader) {
+    BestsellerSnapshot current = snapshot.get();
+    if (current == null) {
+      log.info("No bestseller snapshot cached, loading synchronously");
+      return load(loader, false);
+    }
+    if (current.isStale(ttl)) {
+      refreshInBackground(loader);
+    }
+    return current;
+  }
+
+  /**
+   * Like {@link #get(Supplier)}, but runs on the refresh executor, so that a caller reading the
+   * load as it goes never holds up the load other callers wait on
+   *
+   * @param loader fetches and parses bestsellers from New York Times API, throws on failure
+   * @return snapshot of the last successful fetch, completed on the refresh executor
+   */
+  public CompletableFuture<BestsellerSnapshot> getAsync(Supplier<Set<Book>> loader) {
+    return CompletableFuture.supplyAsync(() -> get(loader), refreshExecutor);
+  }
+
+  /**
+   * Loads a new snapshot on the calling thread if nothing is cached yet or the cached snapshot is
+   * stale, used by the scheduled refresher so that requests do not have to trigger refreshes
+   *
+   * @param loader fetches and parses bestsellers from New York Times API, throws on failure
+   * @return the current snapshot
+   */
+  public BestsellerSnapshot refreshIfStale(Supplier<Set<Book>> loader) {
+    BestsellerSnapshot current = snapshot.get();
+    if (current == null || current.isStale(ttl)) {
+      return load(loader, true);
+    }
+    return current;
+  }
+
+  /**
+   * @return the cached snapshot, null if nothing has been loaded yet
+   */
+  public BestsellerSnapshot getIfPresent() {
+    return snapshot.get();
+  }
+
+  /**
+   * Fetches a new snapshot and stores it as the current one. Callers arriving while a fetch is
+   * running share its result instead of calling New York Times API again
+   *
+   * @param loader fetches and parses bestsellers from New York Times API
+   * @param replace false to keep a snapshot stored by a fetch that finished just before this one
+   *     started
+   * @return the new snapshot
+   */
+  private BestsellerSnapshot load(Supplier<Set<Book>> loader, boolean replace) {
+    return singleFlight.execute(
+        FULL_OVERVIEW,
+        () -> {
+          BestsellerSnapshot current = snapshot.get();
+          if (!replace && current != null) {
+            return current;
+          }
+          BestsellerSnapshot loaded = new BestsellerSnapshot(loader.get(), Instant.now());
+          snapshot.set(loaded);
+          log.info("Bestseller snapshot refreshed with {} books", loaded.books().size());
+          persist(loaded);
+          return loaded;
+        });
+  }
+
+  /**
+   * Writes the snapshot to the store on the refresh executor, off the request path
+   *
+   * @param loaded snapshot to persist
+   */
+  private void persist(BestsellerSnapshot loaded) {
+    if (store == null) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(() -> store.save(loaded));
+    } catch (Exception e) {
+      log.error("Could not schedule persisting of bestseller snapshot", e);
+    }
+  }
+
+  /**
+   * Refreshes the snapshot on the refresh executor unless a refresh is already running. A failed
+   * refresh keeps serving the stale snapshot.
+   *
+   * @param loader fetches and parses bestsellers from New York Times API
+   */
+  private void refreshInBackground(Supplier<Set<Book>> loader) {
+    if (singleFlight.isInFlight(FULL_OVERVIEW) || !refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    log.info("Bestseller snapshot is stale, refreshing in background");
+    try {
+      refreshExecutor.execute(
+          () -> {
+            try {
+              load(loader, true);
+            } catch (Exception e) {
+              log.warn(
+                  "Background refresh of bestseller snapshot failed, serving stale data: {}",
+                  e.toString());
+            } finally {
+              refreshing.set(false);
+            }
+          });
+    } catch (Exception e) {
+      refreshing.set(false);
+      log.error("Could not schedule background refresh of bestseller snapshot", e);
+    }
+  }
+
+  /**
+   * @return number of calls made to New York Times API to load a snapshot
+   */
+  public long getLoadCount() {
+    return singleFlight.getFlightCount();
+  }
+
+  /**
+   * @return number of callers that joined an already running load
+   */
+  public long getCoalescedCount() {
+    return singleFlight.getCoalescedCount();
+  }
+}
@@ -0,0 +1,129 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists the last good bestseller snapshot to a compact binary file, so that after a restart
+ * bestsellers are served from local data instead of waiting on New York Times API.<br>
+ * The file is a gzipped stream of the snapshot time followed by the fields of every book. It is
+ * written to a temporary file first and moved into place, so a crash never leaves a partial file.
+ */
+@Slf4j
+public class BestsellerSnapshotStore {
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path file;
+
+  public BestsellerSnapshotStore(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Reads the persisted snapshot
+   *
+   * @return the persisted snapshot, empty if there is none or it cannot be read
+   */
+  public Optional<BestsellerSnapshot> load() {
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        log.warn("Ignoring bestseller snapshot {} written in another format", file);
+        return Optional.empty();
+      }
+      Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+      int size = in.readInt();
+      Set<Book> books = new LinkedHashSet<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        books.add(
+            Book.builder()
+                .isbn(in.readUTF())
+                .title(in.readUTF())
+                .author(in.readUTF())
+                .imageUrl(in.readUTF())
+                .listName(in.readUTF())
+                .encodedListName(in.readUTF())
+                .rating(in.readInt())
+                .price(in.readInt())
+                .build());
+      }
+      log.info("Loaded bestseller snapshot of {} books fetched at {}", size, fetchedAt);
+      return Optional.of(new BestsellerSnapshot(books, fetchedAt));
+    } catch (IOException e) {
+      log.warn("Could not read bestseller snapshot {}, ignoring it", file, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Writes the snapshot, replacing the persisted one
+   *
+   * @param snapshot snapshot to persist
+   */
+  public void save(BestsellerSnapshot snapshot) {
+    Path temporaryFile = null;
+    try {
+      Path directory = file.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(
+              new BufferedOutputStream(
+                  new GZIPOutputStream(Files.newOutputStream(temporaryFile))))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(snapshot.fetchedAt().toEpochMilli());
+        out.writeInt(snapshot.books().size());
+        for (Book book : snapshot.books()) {
+          out.writeUTF(Objects.toString(book.getIsbn(), ""));
+          out.writeUTF(Objects.toString(book.getTitle(), ""));
+          out.writeUTF(Objects.toString(book.getAuthor(), ""));
+          out.writeUTF(Objects.toString(book.getImageUrl(), ""));
+          out.writeUTF(Objects.toString(book.getListName(), ""));
+          out.writeUTF(Objects.toString(book.getEncodedListName(), ""));
+          out.writeInt(book.getRating());
+          out.writeInt(book.getPrice());
+        }
+      }
+      Files.move(
+          temporaryFile,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      log.info("Persisted bestseller snapshot of {} books to {}", snapshot.books().size(), file);
+    } catch (IOException e) {
+      log.warn("Could not persist bestseller snapshot to {}", file, e);
+      deleteQuietly(temporaryFile);
+    }
+  }
+
+  private void deleteQuietly(Path temporaryFile) {
+    if (temporaryFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(temporaryFile);
+    } catch (IOException e) {
+      log.warn("Could not delete temporary snapshot file {}", temporaryFile, e);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.service.RequestTimings.Stage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers and counters of the bestseller pipeline, exposed with the rest of the Micrometer meters on
+ * the Prometheus endpoint. Percentiles and histograms of the <code>bookworm.*</code> timers are
+ * configured in <code>application.properties</code>.<br>
+ * Repository operations, the second-level and query cache and outgoing HTTP calls are measured by
+ * the meters Spring Boot and Hibernate register on their own.<br>
+ * Timed stages are also added to the {@link RequestTimings} of the current request.
+ */
+@Component
+public class BookwormMetrics {
+  static final String NYT_CALL = "bookworm.nyt.call";
+  static final String NYT_PARSE = "bookworm.nyt.parse";
+  static final String INDEX_MERGE = "bookworm.index.merge";
+  static final String FALLBACKS = "bookworm.fallbacks";
+  static final String CACHE_REQUESTS = "bookworm.cache.requests";
+  static final String FAVOURITE_WRITES = "bookworm.favourites.writes";
+
+  private final MeterRegistry registry;
+
+  public BookwormMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * @return sample to stop once the timed stage is over
+   */
+  public Timer.Sample start() {
+    return Timer.start(registry);
+  }
+
+  /**
+   * Records a call to New York Times API, from sending the request until the body is parsed
+   *
+   * @param sample sample started before the call
+   * @param endpoint <code>full-overview</code> or <code>current-list</code>
+   * @param success false if the call failed or was not attempted
+   */
+  public void recordNytCall(Timer.Sample sample, String endpoint, boolean success) {
+    long nanos =
+        sample.stop(
+            Timer.builder(NYT_CALL)
+                .description("Calls to New York Times API, including parsing of the response")
+                .tag("endpoint", endpoint)
+                .tag("outcome", success ? "success" : "failure")
+                .register(registry));
+    RequestTimings.record(Stage.NYT, nanos);
+  }
+
+  /**
+   * Records the parsing of a New York Times API response. The body is parsed as it streams in, so
+   * this includes reading it from the connection
+   *
+   * @param sample sample started before parsing
+   * @param endpoint <code>full-overview</code> or <code>current-list</code>
+   */
+  public void recordParse(Timer.Sample sample, String endpoint) {
+    long nanos =
+        sample.stop(
+            Timer.builder(NYT_PARSE)
+                .description("Parsing of New York Times API responses into books")
+                .tag("endpoint", endpoint)
+                .register(registry));
+    RequestTimings.record(Stage.PARSE, nanos);
+  }
+
+  /**
+   * Records the merge of a snapshot with the stored books into a new bestseller index
+   *
+   * @param sample sample started before loading the stored books
+   */
+  public void recordMerge(Timer.Sample sample) {
+    sample.stop(
+        Timer.builder(INDEX_MERGE)
+            .description("Merges of a bestseller snapshot with the books stored in the database")
+            .register(registry));
+  }
+
+  /**
+   * Counts a response served from fallback data because New York Times API could not be used
+   *
+   * @param fallback <code>hardcoded</code> or <code>index</code>
+   */
+  public void countFallback(String fallback) {
+    registry.counter(FALLBACKS, "fallback", fallback).increment();
+  }
+
+  /**
+   * Counts a lookup of an in-memory cache of the bestseller pipeline
+   *
+   * @param cache <code>index</code> or <code>response</code>
+   * @param hit true if the cached value could be served
+   */
+  public void countCacheRequest(String cache, boolean hit) {
+    registry.counter(CACHE_REQUESTS, "cache", cache, "result", hit ? "hit" : "miss").increment();
+  }
+
+  /**
+   * Counts favourite and rating/price changes
+   *
+   * @param operation <code>add</code>, <code>remove</code> or <code>update</code>
+   * @param books number of changed books
+   */
+  public void countFavouriteWrites(String operation, int books) {
+    registry.counter(FAVOURITE_WRITES, "operation", operation).increment(books);
+  }
+}
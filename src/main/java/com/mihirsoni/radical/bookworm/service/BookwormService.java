@@ -1,21 +1,56 @@
 package com.mihirsoni.radical.bookworm.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mihirsoni.radical.bookworm.config.BookwormConfiguration;
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome.Status;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.dto.FavouritePage;
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
+import com.mihirsoni.radical.bookworm.models.BestsellerIndex;
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
 import com.mihirsoni.radical.bookworm.models.Book;
 import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache.EncodedBestsellers;
 import com.mihirsoni.radical.bookworm.utils.Constants;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -23,122 +58,534 @@ import org.springframework.web.util.UriComponentsBuilder;
 @AllArgsConstructor
 @Slf4j
 public class BookwormService {
+  public static final int MAX_FAVOURITES_LIMIT = 100;
+
+  /** Prefix of entity tags, random per run so that tags handed out before a restart never match */
+  private static final String ETAG_PREFIX = UUID.randomUUID().toString().substring(0, 8);
+
+  /** Parsed lists buffered for a streaming client before the rest is streamed from the index */
+  private static final int STREAMED_LISTS_BUFFER = 8;
+
+  /** Marks the end of the parsed lists, compared by identity */
+  private static final List<Book> END_OF_LISTS = Collections.unmodifiableList(new ArrayList<>());
+
   private final BookwormRepository repository;
   private final RestTemplate restTemplate;
   private final BookwormConfiguration configuration;
-  private final ObjectMapper objectMapper;
+  private final BestsellerParser parser;
+  private final BestsellerSnapshotCache snapshotCache;
+  private final BestsellerListCache listCache;
+  private final NytCircuitBreaker circuitBreaker;
+  private final HardcodedBestsellers hardcodedBestsellers;
+  private final FavouriteWriteBehind writeBehind;
+  private final TransactionOperations transactionOperations;
+  private final PurgeJobs purgeJobs;
+  private final BestsellerResponseCache responseCache;
+  private final BookwormMetrics metrics;
+  private final AtomicReference<BestsellerIndex> index = new AtomicReference<>();
+
+  /** Serialises changes of the same ISBN while changes of different ISBNs run in parallel */
+  private final StripedLocks isbnLocks = new StripedLocks(256);
+
+  /** Shared by every change of favourites or ratings/prices, held exclusively by a purge */
+  private final ReadWriteLock purgeLock = new ReentrantReadWriteLock();
+
+  /** Incremented after every favourite or rating/price change, once the change is visible */
+  private final AtomicLong favouritesVersion = new AtomicLong();
 
   /**
-   * Fetches all bestsellers across all categories from New York Times API (full-overview)
+   * Fetches all bestsellers across all categories from New York Times API (full-overview). The
+   * response is served from the in-memory bestseller index, which is kept up to date by {@link
+   * #refreshBestsellers()} and by the favourite/rating changes made through this service
    *
    * @return Set of bestseller books
    */
   public Set<Book> fetchAllBestsellersAcrossCategoriesFromNYTAPI() {
-    String uri = buildUri();
+    Set<Book> books = currentIndex().books();
+    log.info("Fetched {} unique bestsellers from New York Times API and DB", books.size());
+    return books;
+  }
+
+  /**
+   * Fetches all bestsellers as a JSON array, see {@link
+   * #fetchAllBestsellersAcrossCategoriesFromNYTAPI()}. The bytes are encoded once per version of
+   * the bestseller index and shared by every request. They carry the entity tag of the index they
+   * were encoded from, which changes whenever the index is rebuilt or one of its books is changed
+   *
+   * @return plain and gzipped JSON bytes of the bestsellers with their entity tag
+   */
+  public EncodedBestsellers fetchEncodedBestsellers() {
+    BestsellerIndex index = currentIndex();
+    return responseCache.get(index, ETAG_PREFIX + "-b" + index.version());
+  }
+
+  /**
+   * Fetches one page of the bestsellers matching a query, filtered and paged from the pre-sorted
+   * views of the in-memory bestseller index
+   *
+   * @param query filters, sort order and page
+   * @return page of matching bestsellers
+   */
+  public BestsellerPage queryBestsellers(BestsellerQuery query) {
+    BestsellerPage page = currentIndex().query(query);
+    log.info("Fetched {} of {} bestsellers matching {}", page.books().size(), page.total(), query);
+    return page;
+  }
+
+  /**
+   * Fetches the bestsellers of one list from New York Times API (current list). Every list is
+   * cached and refreshed on its own, and only lists of the current bestsellers can be requested
+   *
+   * @param encodedListName encoded name of the list
+   * @return List of bestseller books of the list, the hardcoded response if nothing could be
+   *     fetched
+   * @throws BestsellerListNotFoundException if the current bestsellers do not contain the list
+   */
+  public List<Book> fetchBestsellersOfList(String encodedListName) {
+    BestsellerIndex current = currentIndex();
+    if (current == hardcodedBestsellers.getIndex()) {
+      return List.copyOf(current.books());
+    }
+    List<Book> indexedList = current.list(encodedListName);
+    if (indexedList.isEmpty()) {
+      throw new BestsellerListNotFoundException(encodedListName);
+    }
 
-    String jsonResponse = null;
+    BestsellerSnapshot snapshot;
     try {
-      log.info("Calling New York Times API");
-      jsonResponse = restTemplate.getForObject(uri, String.class);
-      log.info("Call to New York Times API was successful");
+      snapshot = listCache.get(encodedListName, this::fetchListFromNYTAPI);
     } catch (Exception e) {
-      /* In case the user hits the rate limit,
-       * return a hardcoded response which has a dummy book with the
-       * error msg as title, author and book cover to let the user know to try again in a few seconds
-       * */
-      try {
-        jsonResponse =
-            new String(Files.readAllBytes(Paths.get("src/main/resources/response.json")));
-      } catch (IOException e1) {
-        log.error(
-            "Error while fetching data from New York Times API, returning hardcoded response", e1);
+      metrics.countFallback("index");
+      log.warn(
+          "Could not fetch list {}, returning it from the bestseller index: {}",
+          encodedListName,
+          e.toString());
+      return indexedList;
+    }
+    Map<String, Book> storedBooks = findStoredBooks(snapshot.books());
+    List<Book> books =
+        snapshot.books().stream()
+            .map(book -> storedBooks.getOrDefault(book.getIsbn(), book))
+            .toList();
+    log.info("Fetched {} bestsellers of list {}", books.size(), encodedListName);
+    return books;
+  }
+
+  /**
+   * Streams all bestsellers list by list, see {@link
+   * #fetchAllBestsellersAcrossCategoriesFromNYTAPI()}. Once bestsellers are loaded, the lists are
+   * read from the bestseller index. Before that, every list is passed on as soon as it is parsed
+   * from the full-overview response, or when <code>bookworm.nyt.refresh-lists</code> is set, as
+   * soon as it is fetched, instead of after all of them. A book of several lists is passed on once
+   *
+   * @param listConsumer receives the bestsellers of every list, on the calling thread
+   */
+  public void streamBestsellers(Consumer<List<Book>> listConsumer) {
+    if (index.get() == null && snapshotCache.getIfPresent() == null) {
+      List<String> refreshLists = configuration.getRefreshLists();
+      if (refreshLists != null && !refreshLists.isEmpty()) {
+        Set<String> streamedIsbns = new HashSet<>();
+        listCache.fetchEach(
+            refreshLists,
+            this::fetchListFromNYTAPI,
+            snapshot -> streamList(snapshot.books(), streamedIsbns, listConsumer));
+        log.info("Streamed {} bestsellers as their lists were fetched", streamedIsbns.size());
+        return;
+      }
+      if (streamFullOverview(listConsumer)) {
+        return;
       }
-      log.error("Error while parsing hardcoded response", e);
     }
+    BestsellerIndex current = currentIndex();
+    for (String listName : current.listNames()) {
+      listConsumer.accept(current.list(listName));
+    }
+    log.info("Streamed {} bestsellers from the bestseller index", current.books().size());
+  }
 
-    assert jsonResponse != null;
-    Set<Book> books = new HashSet<>();
-    try {
-      JsonNode rootNode = objectMapper.readTree(jsonResponse);
-      JsonNode listsNode = rootNode.path("results").path("lists");
-
-      if (listsNode.isArray()) {
-        for (JsonNode listNode : listsNode) {
-          JsonNode booksNode = listNode.path("books");
-          if (booksNode.isArray()) {
-            for (JsonNode bookNode : booksNode) {
-              String isbn = bookNode.path("primary_isbn13").asText();
-              if (repository.existsById(isbn)) {
-                Optional<Book> book = repository.findById(isbn);
-                book.ifPresent(books::add);
-                continue;
-              }
-              Book book = buildBookObjectFromJsonNode(bookNode, listNode, isbn);
-              books.add(book);
-            }
+  /**
+   * Loads the snapshot through the snapshot cache on the NYT executor, passing on every list of the
+   * full-overview response as soon as it is parsed. Parsed lists reach the calling thread through a
+   * bounded buffer, so a slow client never holds up the load other requests wait on: once the
+   * buffer is full the load stops filling it and the rest is streamed from the bestseller index.
+   * A request joining a load started by another one streams from the index once the load is done
+   *
+   * @param listConsumer receives the bestsellers of every list, on the calling thread
+   * @return true if the lists were streamed, false if they are to be streamed from the index
+   */
+  private boolean streamFullOverview(Consumer<List<Book>> listConsumer) {
+    BlockingQueue<List<Book>> parsedLists = new ArrayBlockingQueue<>(STREAMED_LISTS_BUFFER + 1);
+    AtomicBoolean detached = new AtomicBoolean();
+    Consumer<List<Book>> listSink =
+        books -> {
+          // one slot is kept for the end marker, so that the load never waits on the client
+          if (detached.get() || parsedLists.remainingCapacity() <= 1 || !parsedLists.offer(books)) {
+            detached.set(true);
           }
-        }
+        };
+    AtomicBoolean loadedHere = new AtomicBoolean();
+    AtomicReference<Throwable> loadFailure = new AtomicReference<>();
+    try {
+      snapshotCache
+          .getAsync(
+              () -> {
+                loadedHere.set(true);
+                return fetchBestsellersFromNYTAPI(listSink);
+              })
+          .whenComplete(
+              (snapshot, failure) -> {
+                boolean wrapped = failure instanceof CompletionException;
+                loadFailure.set(wrapped ? failure.getCause() : failure);
+                parsedLists.add(END_OF_LISTS);
+              });
+    } catch (RejectedExecutionException e) {
+      log.warn("Could not schedule loading of bestsellers, loading on the request thread");
+      return false;
+    }
+    Set<String> streamedIsbns = new HashSet<>();
+    try {
+      List<Book> books;
+      while ((books = parsedLists.take()) != END_OF_LISTS) {
+        streamList(books, streamedIsbns, listConsumer);
       }
-    } catch (IOException e) {
-      log.error("Error while building Book object from New York Times API response", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while streaming bestsellers", e);
+    } finally {
+      detached.set(true);
     }
-    log.info("Fetched {} unique bestsellers from New York Times API and DB", books.size());
-    return books;
+    Throwable failure = loadFailure.get();
+    if (failure instanceof RuntimeException e) {
+      if (!streamedIsbns.isEmpty()) {
+        throw e;
+      }
+      BestsellerIndex fallback = fallbackIndex(e);
+      for (String listName : fallback.listNames()) {
+        listConsumer.accept(fallback.list(listName));
+      }
+      return true;
+    } else if (failure != null) {
+      throw new IllegalStateException("Could not load bestsellers", failure);
+    }
+    if (!loadedHere.get()) {
+      return false;
+    }
+    int parsedCount = streamedIsbns.size();
+    BestsellerIndex current = currentIndex();
+    for (String listName : current.listNames()) {
+      List<Book> rest =
+          current.list(listName).stream()
+              .filter(book -> streamedIsbns.add(book.getIsbn()))
+              .toList();
+      if (!rest.isEmpty()) {
+        listConsumer.accept(rest);
+      }
+    }
+    log.info(
+        "Streamed {} bestsellers as their lists were parsed, {} from the bestseller index",
+        parsedCount,
+        streamedIsbns.size() - parsedCount);
+    return true;
+  }
+
+  /**
+   * Passes on the bestsellers of one list not passed on yet, with their stored version where one
+   * exists
+   *
+   * @param books bestsellers of the list as returned by New York Times API
+   * @param streamedIsbns ISBNs of the books passed on so far, updated
+   * @param listConsumer receives the bestsellers of the list
+   */
+  private void streamList(
+      Collection<Book> books, Set<String> streamedIsbns, Consumer<List<Book>> listConsumer) {
+    Map<String, Book> storedBooks = findStoredBooks(books);
+    listConsumer.accept(
+        books.stream()
+            .filter(book -> streamedIsbns.add(book.getIsbn()))
+            .map(book -> storedBooks.getOrDefault(book.getIsbn(), book))
+            .toList());
+  }
+
+  /**
+   * Refreshes the snapshot from New York Times API once it is stale and swaps in the index of the
+   * new snapshot, so that requests only ever read a pre-built index. Run on a timer by {@link
+   * BestsellerRefresher}
+   */
+  public void refreshBestsellers() {
+    try {
+      rebuildIndex(snapshotCache.refreshIfStale(this::fetchBestsellers));
+    } catch (Exception e) {
+      log.warn("Scheduled refresh of bestsellers failed: {}", e.toString());
+    }
+  }
+
+  /**
+   * Returns the index of the current snapshot, building it first if the snapshot cache has moved
+   * on since the last build
+   *
+   * @return current bestseller index, the index of the hardcoded response if nothing could be
+   *     fetched
+   */
+  private BestsellerIndex currentIndex() {
+    BestsellerSnapshot snapshot;
+    try {
+      snapshot = snapshotCache.get(this::fetchBestsellers);
+    } catch (Exception e) {
+      return fallbackIndex(e);
+    }
+    BestsellerIndex current = index.get();
+    boolean hit = current != null && current.snapshot() == snapshot;
+    metrics.countCacheRequest("index", hit);
+    return hit ? current : rebuildIndex(snapshot);
+  }
+
+  /**
+   * @param e why no snapshot could be loaded
+   * @return index of the hardcoded response
+   */
+  private BestsellerIndex fallbackIndex(Exception e) {
+    /* In case the user hits the rate limit,
+     * return a hardcoded response which has a dummy book with the
+     * error msg as title, author and book cover to let the user know to try again in a few seconds
+     * */
+    metrics.countFallback("hardcoded");
+    if (e instanceof NytApiUnavailableException) {
+      log.warn("{}, returning hardcoded response", e.getMessage());
+    } else {
+      log.error(
+          "Error while fetching data from New York Times API, returning hardcoded response", e);
+    }
+    return hardcodedBestsellers.getIndex();
+  }
+
+  /**
+   * Builds the index of a snapshot and swaps it in atomically. A concurrent favourite/rating change
+   * swaps in its own copy of the index, making the swap fail and the build start over, so changes
+   * stored while the index is built are never lost
+   *
+   * @param snapshot snapshot to index
+   * @return index of the snapshot, or the current one if it is of the same or a newer snapshot
+   */
+  private BestsellerIndex rebuildIndex(BestsellerSnapshot snapshot) {
+    while (true) {
+      BestsellerIndex current = index.get();
+      if (current != null
+          && (current.snapshot() == snapshot
+              || current.snapshot().fetchedAt().isAfter(snapshot.fetchedAt()))) {
+        return current;
+      }
+      Timer.Sample merge = metrics.start();
+      BestsellerIndex rebuilt = BestsellerIndex.build(snapshot, findStoredBooks(snapshot.books()));
+      for (PendingWrite write : writeBehind.pending().values()) {
+        rebuilt = applyPendingWrite(rebuilt, write);
+      }
+      metrics.recordMerge(merge);
+      if (index.compareAndSet(current, rebuilt)) {
+        log.info("Bestseller index rebuilt for snapshot fetched at {}", snapshot.fetchedAt());
+        return rebuilt;
+      }
+    }
+  }
+
+  /**
+   * Loads the stored version of bestsellers, so that favourites and changed ratings/prices are
+   * kept. All stored books are loaded in one query
+   *
+   * @param nytBooks bestsellers as returned by New York Times API
+   * @return stored books keyed by ISBN
+   */
+  private Map<String, Book> findStoredBooks(Collection<Book> nytBooks) {
+    List<String> isbns = nytBooks.stream().map(Book::getIsbn).toList();
+    return repository.findAllById(isbns).stream()
+        .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+  }
+
+  /**
+   * Applies the stored version of a book to the bestseller index without rebuilding it
+   *
+   * @param storedBook book as just stored in the database
+   */
+  private void overlayStoredBook(Book storedBook) {
+    index.updateAndGet(current -> current == null ? null : current.withOverride(storedBook));
+  }
+
+  /**
+   * Loads the bestsellers of a new snapshot: the full-overview, or when <code>
+   * bookworm.nyt.refresh-lists</code> is set, those lists fetched concurrently
+   *
+   * @return Set of bestseller books as returned by New York Times API
+   */
+  private Set<Book> fetchBestsellers() {
+    List<String> refreshLists = configuration.getRefreshLists();
+    if (refreshLists == null || refreshLists.isEmpty()) {
+      return fetchBestsellersFromNYTAPI();
+    }
+    return listCache.fetchAll(refreshLists, this::fetchListFromNYTAPI);
+  }
+
+  /**
+   * Queues a change for the write-behind flush and applies it to the bestseller index straight away
+   *
+   * @param write change to queue
+   */
+  private void queue(PendingWrite write) {
+    writeBehind.enqueue(write);
+    index.updateAndGet(current -> current == null ? null : applyPendingWrite(current, write));
+  }
+
+  /**
+   * Copies the index with a pending change applied to the indexed version of its book
+   *
+   * @param current bestseller index
+   * @param write change not stored yet
+   * @return new index, or the given one if the book is not a bestseller of the snapshot
+   */
+  private static BestsellerIndex applyPendingWrite(BestsellerIndex current, PendingWrite write) {
+    String isbn = write.book().getIsbn();
+    Book indexedBook = current.book(isbn);
+    if (indexedBook == null) {
+      return current;
+    }
+    Book book = write.applyTo(indexedBook.toBuilder().build());
+    return book == null ? current.withoutOverride(isbn) : current.withOverride(book);
+  }
+
+  /**
+   * Calls New York Times API (full-overview) and streams the response body into book objects. Used
+   * as the loader of the snapshot cache, so any failure is thrown rather than replaced with the
+   * hardcoded response
+   *
+   * @return Set of bestseller books as returned by New York Times API
+   */
+  private Set<Book> fetchBestsellersFromNYTAPI() {
+    return callNYTAPI(
+        buildUri(Constants.GET_FULL_OVERVIEW, Map.of()),
+        "full-overview",
+        parser::parseFullOverview);
+  }
+
+  /**
+   * Calls New York Times API (full-overview) and hands the books of every list to the sink as soon
+   * as the list is parsed, see {@link #fetchBestsellersFromNYTAPI()}
+   *
+   * @param listSink consumer of the books of every list, called while the response is read
+   * @return Set of bestseller books as returned by New York Times API
+   */
+  private Set<Book> fetchBestsellersFromNYTAPI(Consumer<List<Book>> listSink) {
+    return callNYTAPI(
+        buildUri(Constants.GET_FULL_OVERVIEW, Map.of()),
+        "full-overview",
+        body -> {
+          Set<Book> books = new LinkedHashSet<>();
+          parser.parseFullOverviewLists(
+              body,
+              list -> {
+                books.addAll(list);
+                listSink.accept(list);
+              });
+          return books;
+        });
   }
 
   /**
-   * Builds book object from json node and list node Generates random price and rating, 5-15 and 1-5
-   * respectively
+   * Calls New York Times API (current list) and streams the response body into book objects
    *
-   * @param bookNode json node of book
-   * @param listNode json node of list
-   * @param isbn ISBN of book
-   * @return Book object
+   * @param encodedListName encoded name of the list
+   * @return Set of bestseller books of the list as returned by New York Times API
    */
-  private Book buildBookObjectFromJsonNode(JsonNode bookNode, JsonNode listNode, String isbn) {
-    return Book.builder()
-        .title(bookNode.path("title").asText())
-        .author(bookNode.path("author").asText())
-        .imageUrl(bookNode.path("book_image").asText())
-        .isFavourite(false)
-        .isRatingPriceChanged(false)
-        .price(
-            bookNode.path("price").asText().equals("0.00")
-                ? generateRandomNumber()
-                : Integer.parseInt(bookNode.path("price").asText()))
-        .listName(listNode.path("list_name").asText())
-        .encodedListName(listNode.path("list_name_encoded").asText())
-        .rating(generateRandomRating())
-        .isbn(isbn)
-        .build();
+  private Set<Book> fetchListFromNYTAPI(String encodedListName) {
+    return callNYTAPI(
+        buildUri(Constants.GET_CURRENT_LIST, Map.of("list", encodedListName)),
+        "current-list",
+        parser::parseCurrentList);
+  }
+
+  /**
+   * Calls New York Times API through the circuit breaker, parsing the response body as it streams.
+   * The call and the parsing are timed separately
+   *
+   * @param uri URI of the endpoint
+   * @param endpoint name of the endpoint for metrics
+   * @param bodyParser parses the response body
+   * @return Set of bestseller books as returned by New York Times API
+   */
+  private Set<Book> callNYTAPI(URI uri, String endpoint, BodyParser bodyParser) {
+    log.info("Calling New York Times API");
+    Timer.Sample call = metrics.start();
+    boolean success = false;
+    try {
+      Set<Book> books =
+          circuitBreaker.call(
+              () ->
+                  restTemplate.execute(
+                      uri,
+                      HttpMethod.GET,
+                      request ->
+                          request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                      response -> {
+                        circuitBreaker.recordQuotaHeaders(response.getHeaders());
+                        Timer.Sample parse = metrics.start();
+                        try {
+                          return bodyParser.parse(response.getBody());
+                        } finally {
+                          metrics.recordParse(parse, endpoint);
+                        }
+                      }));
+      success = true;
+      log.info("Call to New York Times API was successful");
+      return books;
+    } finally {
+      metrics.recordNytCall(call, endpoint, success);
+    }
   }
 
   /**
    * Builds URI for external API call with query params.<br>
-   * Built with the idea that this could be used for multiple API endpoints. <b>Hardcoded URL for
-   * now to prevent code smells</b>
+   * The host comes from <code>bookworm.nyt.base-url</code>
    *
-   * @return Built URI in String format
+   * @param path path of the endpoint, see {@link Constants}
+   * @param uriVariables values of the variables in the path
+   * @return Built URI
    */
-  private String buildUri() {
-    return UriComponentsBuilder.fromUriString(Constants.GET_FULL_OVERVIEW)
+  private URI buildUri(String path, Map<String, String> uriVariables) {
+    return UriComponentsBuilder.fromUriString(configuration.getNytBaseUrl())
+        .path(path)
         .queryParam("api-key", configuration.getApiKey())
-        .toUriString();
+        .buildAndExpand(uriVariables)
+        .encode()
+        .toUri();
+  }
+
+  @FunctionalInterface
+  private interface BodyParser {
+    Set<Book> parse(InputStream body) throws IOException;
   }
 
   /**
    * Adds a book to favourite list if it does not already exist. If it does, just marks it as
-   * favourite
+   * favourite. Changes of the same book are applied one at a time
    *
    * @param book Book object to be marked as favourite
    */
   public void addToFavourite(Book book) {
+    withoutPurge(() -> isbnLocks.withLock(book.getIsbn(), () -> addToFavouriteLocked(book)));
+    favouritesVersion.incrementAndGet();
+    metrics.countFavouriteWrites("add", 1);
+  }
+
+  private void addToFavouriteLocked(Book book) {
+    if (writeBehind.isEnabled()) {
+      queue(PendingWrite.favourite(book, true));
+      log.info("Book with ISBN {} queued to be added to favourite list", book.getIsbn());
+      return;
+    }
     repository
         .findById(book.getIsbn())
         .ifPresentOrElse(
             (oldBook) -> {
               oldBook.setFavourite(true);
               repository.save(oldBook);
+              overlayStoredBook(oldBook);
               log.info(
                   "Book with ISBN {} already exists in the favourite list, marked as favourite",
                   book.getIsbn());
@@ -146,6 +593,7 @@ public class BookwormService {
             () -> {
               book.setFavourite(true); // ensure that book is marked as favourite
               repository.save(book);
+              overlayStoredBook(book);
               log.info("Book with ISBN {} added to favourite list", book.getIsbn());
             });
   }
@@ -157,6 +605,17 @@ public class BookwormService {
    * @param book Book object to be removed from favourite list
    */
   public void removeFromFavourite(Book book) {
+    withoutPurge(() -> isbnLocks.withLock(book.getIsbn(), () -> removeFromFavouriteLocked(book)));
+    favouritesVersion.incrementAndGet();
+    metrics.countFavouriteWrites("remove", 1);
+  }
+
+  private void removeFromFavouriteLocked(Book book) {
+    if (writeBehind.isEnabled()) {
+      queue(PendingWrite.favourite(book, false));
+      log.info("Book with ISBN {} queued to be removed from favourite list", book.getIsbn());
+      return;
+    }
     repository
         .findById(book.getIsbn())
         .ifPresentOrElse(
@@ -164,12 +623,15 @@ public class BookwormService {
               if (!oldBook.isRatingPriceChanged()) {
                 log.info("Book with ISBN {} removed from favourite list", book.getIsbn());
                 repository.delete(oldBook);
+                index.updateAndGet(
+                    current -> current == null ? null : current.withoutOverride(book.getIsbn()));
               } else {
                 log.info(
                     "Price/Rating of book with ISBN {} has had been changed, unmarked as favourite",
                     book.getIsbn());
                 oldBook.setFavourite(false);
                 repository.save(oldBook);
+                overlayStoredBook(oldBook);
               }
             },
             () ->
@@ -184,6 +646,17 @@ public class BookwormService {
    * @param book Book object with the new values
    */
   public void updateRatingAndPrice(Book book) {
+    withoutPurge(() -> isbnLocks.withLock(book.getIsbn(), () -> updateRatingAndPriceLocked(book)));
+    favouritesVersion.incrementAndGet();
+    metrics.countFavouriteWrites("update", 1);
+  }
+
+  private void updateRatingAndPriceLocked(Book book) {
+    if (writeBehind.isEnabled()) {
+      queue(PendingWrite.ratingAndPrice(book));
+      log.info("Rating and price of book with ISBN {} queued to be updated", book.getIsbn());
+      return;
+    }
     repository
         .findById(book.getIsbn())
         .ifPresentOrElse(
@@ -192,10 +665,12 @@ public class BookwormService {
               oldBook.setPrice(book.getPrice());
               oldBook.setRatingPriceChanged(true);
               repository.save(oldBook);
+              overlayStoredBook(oldBook);
             },
             () -> {
               book.setRatingPriceChanged(true); // ensure flag is set
               repository.save(book);
+              overlayStoredBook(book);
             });
     log.info(
         "Book with ISBN {} updated with rating {} and price {}",
@@ -205,37 +680,329 @@ public class BookwormService {
   }
 
   /**
-   * Fetches all books from favourite list
+   * Adds several books to favourite list, see {@link #addToFavourite(Book)}. Stored books are
+   * loaded in one query and all changes are written in one transaction with batched statements.
+   * Changes pending in the write-behind queue are flushed first, so they cannot overwrite these
+   *
+   * @param books Book objects to be marked as favourite
+   * @return outcome of every book, in request order
+   */
+  public List<BulkOutcome> addAllToFavourite(List<Book> books) {
+    return inLockedTransaction(books, () -> addAllToFavouriteLocked(books));
+  }
+
+  private List<BulkOutcome> addAllToFavouriteLocked(List<Book> books) {
+    Map<String, Book> storedBooks = findStoredBooks(withIsbn(books));
+    Map<String, Book> changedBooks = new LinkedHashMap<>();
+    List<BulkOutcome> outcomes = new ArrayList<>(books.size());
+    for (Book book : books) {
+      if (book.getIsbn() == null) {
+        outcomes.add(new BulkOutcome(null, Status.INVALID));
+        continue;
+      }
+      Book storedBook = storedBooks.get(book.getIsbn());
+      if (storedBook != null) {
+        storedBook.setFavourite(true);
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.MARKED_FAVOURITE));
+      } else {
+        book.setFavourite(true); // ensure that book is marked as favourite
+        storedBooks.put(book.getIsbn(), book);
+        storedBook = book;
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.ADDED));
+      }
+      changedBooks.put(storedBook.getIsbn(), storedBook);
+    }
+    repository.saveAll(List.copyOf(changedBooks.values()));
+    afterCommit(() -> changedBooks.values().forEach(this::overlayStoredBook));
+    metrics.countFavouriteWrites("add", changedBooks.size());
+    log.info("{} books added to favourite list in bulk", changedBooks.size());
+    return outcomes;
+  }
+
+  /**
+   * Removes several books from favourite list, see {@link #removeFromFavourite(Book)}. Stored books
+   * are loaded in one query and all changes are written in one transaction with batched statements
+   *
+   * @param books Book objects to be removed from favourite list
+   * @return outcome of every book, in request order
+   */
+  public List<BulkOutcome> removeAllFromFavourite(List<Book> books) {
+    return inLockedTransaction(books, () -> removeAllFromFavouriteLocked(books));
+  }
+
+  private List<BulkOutcome> removeAllFromFavouriteLocked(List<Book> books) {
+    Map<String, Book> storedBooks = findStoredBooks(withIsbn(books));
+    Map<String, Book> changedBooks = new LinkedHashMap<>();
+    Map<String, Book> deletedBooks = new LinkedHashMap<>();
+    List<BulkOutcome> outcomes = new ArrayList<>(books.size());
+    for (Book book : books) {
+      if (book.getIsbn() == null) {
+        outcomes.add(new BulkOutcome(null, Status.INVALID));
+        continue;
+      }
+      Book storedBook = storedBooks.get(book.getIsbn());
+      if (storedBook == null) {
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.NOT_FOUND));
+      } else if (!storedBook.isRatingPriceChanged()) {
+        storedBooks.remove(storedBook.getIsbn());
+        changedBooks.remove(storedBook.getIsbn());
+        deletedBooks.put(storedBook.getIsbn(), storedBook);
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.REMOVED));
+      } else {
+        storedBook.setFavourite(false);
+        changedBooks.put(storedBook.getIsbn(), storedBook);
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.UNMARKED_FAVOURITE));
+      }
+    }
+    repository.deleteAll(List.copyOf(deletedBooks.values()));
+    repository.saveAll(List.copyOf(changedBooks.values()));
+    afterCommit(
+        () -> {
+          deletedBooks
+              .keySet()
+              .forEach(
+                  isbn ->
+                      index.updateAndGet(
+                          current -> current == null ? null : current.withoutOverride(isbn)));
+          changedBooks.values().forEach(this::overlayStoredBook);
+        });
+    metrics.countFavouriteWrites("remove", deletedBooks.size() + changedBooks.size());
+    log.info(
+        "{} books removed from and {} unmarked in favourite list in bulk",
+        deletedBooks.size(),
+        changedBooks.size());
+    return outcomes;
+  }
+
+  /**
+   * Updates rating and/or price of several books, see {@link #updateRatingAndPrice(Book)}. Stored
+   * books are loaded in one query and all changes are written in one transaction with batched
+   * statements
    *
+   * @param books Book objects with the new values
+   * @return outcome of every book, in request order
+   */
+  public List<BulkOutcome> updateAllRatingsAndPrices(List<Book> books) {
+    return inLockedTransaction(books, () -> updateAllRatingsAndPricesLocked(books));
+  }
+
+  private List<BulkOutcome> updateAllRatingsAndPricesLocked(List<Book> books) {
+    Map<String, Book> storedBooks = findStoredBooks(withIsbn(books));
+    Map<String, Book> changedBooks = new LinkedHashMap<>();
+    List<BulkOutcome> outcomes = new ArrayList<>(books.size());
+    for (Book book : books) {
+      if (book.getIsbn() == null) {
+        outcomes.add(new BulkOutcome(null, Status.INVALID));
+        continue;
+      }
+      Book storedBook = storedBooks.get(book.getIsbn());
+      if (storedBook != null) {
+        storedBook.setRating(book.getRating());
+        storedBook.setPrice(book.getPrice());
+        storedBook.setRatingPriceChanged(true);
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.UPDATED));
+      } else {
+        book.setRatingPriceChanged(true); // ensure flag is set
+        storedBooks.put(book.getIsbn(), book);
+        storedBook = book;
+        outcomes.add(new BulkOutcome(book.getIsbn(), Status.CREATED));
+      }
+      changedBooks.put(storedBook.getIsbn(), storedBook);
+    }
+    repository.saveAll(List.copyOf(changedBooks.values()));
+    afterCommit(() -> changedBooks.values().forEach(this::overlayStoredBook));
+    metrics.countFavouriteWrites("update", changedBooks.size());
+    log.info("Rating and price of {} books updated in bulk", changedBooks.size());
+    return outcomes;
+  }
+
+  /**
+   * Runs a bulk change holding the locks of its books, inside one transaction that commits before
+   * the locks are released. Changes pending in the write-behind queue are flushed first. A purge
+   * waits for the change, and the change waits for a running purge
+   *
+   * @param books books of the bulk request
+   * @param change bulk change
+   * @return outcome of every book
+   */
+  private List<BulkOutcome> inLockedTransaction(
+      List<Book> books, Supplier<List<BulkOutcome>> change) {
+    List<String> isbns = withIsbn(books).stream().map(Book::getIsbn).toList();
+    List<BulkOutcome> outcomes =
+        withoutPurge(
+            () ->
+                isbnLocks.withLocks(
+                    isbns,
+                    () -> {
+                      writeBehind.flush();
+                      return transactionOperations.execute(status -> change.get());
+                    }));
+    favouritesVersion.incrementAndGet();
+    return outcomes;
+  }
+
+  /**
+   * Runs a change of favourites or ratings/prices while no purge is running. Changes do not wait
+   * for each other here, only for a purge
+   *
+   * @param change change to run
+   */
+  private void withoutPurge(Runnable change) {
+    withoutPurge(
+        () -> {
+          change.run();
+          return null;
+        });
+  }
+
+  private <T> T withoutPurge(Supplier<T> change) {
+    Lock lock = purgeLock.readLock();
+    lock.lock();
+    try {
+      return change.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static List<Book> withIsbn(List<Book> books) {
+    return books.stream().filter(book -> book.getIsbn() != null).toList();
+  }
+
+  /**
+   * Runs an action once the current transaction has committed, so the bestseller index never shows
+   * changes that were rolled back. Runs it straight away if there is no transaction
+   *
+   * @param action action to run
+   */
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            action.run();
+          }
+        });
+  }
+
+  /**
+   * Fetches the favourite list in ISBN order, including changes still queued for write-behind. The
+   * list is read page by page, see {@link #getFavouritePage(String, int)}
+   *
+   * @param after ISBN to start after, null for the whole list
    * @return List of favourite books
    */
-  public List<Book> getFavouriteList() {
-    List<Book> list = repository.findByFavourite();
+  public List<FavouriteBook> getFavouriteList(String after) {
+    List<FavouriteBook> list = new ArrayList<>();
+    String cursor = after;
+    do {
+      FavouritePage page = findFavouritePage(cursor, MAX_FAVOURITES_LIMIT);
+      list.addAll(page.books());
+      cursor = page.nextCursor();
+    } while (cursor != null);
     log.info("{} favourite bestsellers fetched", list.size());
     return list;
   }
 
+  /**
+   * Fetches one page of the favourite list in ISBN order, including changes still queued for
+   * write-behind
+   *
+   * @param after ISBN of the last book of the previous page, null for the first page
+   * @param limit maximum number of books of the page, between 1 and {@value #MAX_FAVOURITES_LIMIT}
+   * @return page of favourite books with the cursor of the next page
+   */
+  public FavouritePage getFavouritePage(String after, int limit) {
+    FavouritePage page = findFavouritePage(after, limit);
+    log.info("{} favourite bestsellers fetched", page.books().size());
+    return page;
+  }
+
+  /**
+   * Reads one page of the favourite list as read-only projections, with enough extra rows to make
+   * up for pending removals and one more to tell if there is a next page
+   *
+   * @param after ISBN of the last book of the previous page, null for the first page
+   * @param limit maximum number of books of the page, clamped to 1 to {@value
+   *     #MAX_FAVOURITES_LIMIT}
+   * @return page of favourite books
+   */
+  private FavouritePage findFavouritePage(String after, int limit) {
+    String cursor = after == null ? "" : after;
+    int pageSize = Math.max(1, Math.min(limit, MAX_FAVOURITES_LIMIT));
+    List<FavouriteBook> storedFavourites =
+        repository.findFavourites(cursor, Limit.of(pageSize + 1 + writeBehind.pendingCount()));
+    List<FavouriteBook> list =
+        writeBehind.overlayFavourites(storedFavourites, cursor, pageSize + 1);
+    if (list.size() <= pageSize) {
+      return new FavouritePage(list, null);
+    }
+    List<FavouriteBook> books = List.copyOf(list.subList(0, pageSize));
+    return new FavouritePage(books, books.get(pageSize - 1).isbn());
+  }
+
+  /**
+   * Fetches the entity tag of the favourite list. It changes after every favourite or rating/price
+   * change made through this service
+   *
+   * @return entity tag of the favourite list
+   */
+  public String getFavouritesETag() {
+    return ETAG_PREFIX + "-f" + favouritesVersion.get();
+  }
+
   /** Purges database and resets application */
   public void purgeDatabase() {
-    repository.deleteAll();
-    log.info("Database purged");
+    purge();
   }
 
   /**
-   * Generates random rating between 1 and 5
+   * Purges database and resets application in the background
    *
-   * @return Random rating
+   * @return the purge job, to poll with {@link #getPurgeJob(String)}
    */
-  private int generateRandomRating() {
-    return (int) (Math.random() * 5) + 1;
+  public PurgeJob purgeDatabaseAsync() {
+    PurgeJob job = purgeJobs.submit(this::purge);
+    log.info("Purge of database submitted as job {}", job.id());
+    return job;
   }
 
   /**
-   * Generates random number between 5 and 20
+   * Fetches the status of a purge job
    *
-   * @return Random number
+   * @param id id of the job
+   * @return the job
+   * @throws PurgeJobNotFoundException if there is no such job or it is no longer kept
    */
-  private int generateRandomNumber() {
-    return (int) (Math.random() * 15) + 5;
+  public PurgeJob getPurgeJob(String id) {
+    return purgeJobs.get(id).orElseThrow(() -> new PurgeJobNotFoundException(id));
+  }
+
+  /**
+   * Drops pending write-behind changes, deletes every book in one bulk statement and one
+   * transaction, and serves the snapshot version of every bestseller again. Changes already running
+   * are waited for, a flush of the write-behind queue included, and new changes wait until the
+   * purge is done, so none of them is stored or shown half before and half after it
+   *
+   * @return number of deleted books
+   */
+  private int purge() {
+    Lock lock = purgeLock.writeLock();
+    lock.lock();
+    Integer deletedBooks;
+    try {
+      writeBehind.clear();
+      deletedBooks = transactionOperations.execute(status -> repository.deleteAllInBulk());
+      index.updateAndGet(current -> current == null ? null : current.withoutOverrides());
+    } finally {
+      lock.unlock();
+    }
+    favouritesVersion.incrementAndGet();
+    log.info("Database purged, {} books deleted", deletedBooks);
+    return deletedBooks == null ? 0 : deletedBooks;
   }
 }
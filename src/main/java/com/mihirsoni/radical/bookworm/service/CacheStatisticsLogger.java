@@ -0,0 +1,45 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs hit/miss statistics of the second-level cache of books and of the query cache, used to size
+ * the cache regions configured in <code>application.conf</code>. Only created when <code>
+ * bookworm.cache.statistics-enabled</code> turns Hibernate statistics on
+ */
+@Component
+@ConditionalOnProperty("bookworm.cache.statistics-enabled")
+@Slf4j
+public class CacheStatisticsLogger {
+  private final Statistics statistics;
+
+  public CacheStatisticsLogger(EntityManagerFactory entityManagerFactory) {
+    this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @Scheduled(
+      initialDelayString = "${bookworm.cache.statistics-interval}",
+      fixedDelayString = "${bookworm.cache.statistics-interval}")
+  public void logStatistics() {
+    if (!statistics.isStatisticsEnabled()) {
+      return;
+    }
+    CacheRegionStatistics books = statistics.getDomainDataRegionStatistics(Book.CACHE_REGION);
+    log.info(
+        "Book cache: {} hits, {} misses, {} puts, {} entries. Query cache: {} hits, {} misses",
+        books.getHitCount(),
+        books.getMissCount(),
+        books.getPutCount(),
+        books.getElementCountInMemory(),
+        statistics.getQueryCacheHitCount(),
+        statistics.getQueryCacheMissCount());
+  }
+}
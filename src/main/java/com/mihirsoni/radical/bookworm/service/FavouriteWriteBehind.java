@@ -0,0 +1,227 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * Optional write-behind queue for favourite and rating/price changes.<br>
+ * When enabled, changes are acknowledged as soon as they are queued. Only the latest pending change
+ * per ISBN is kept, and pending changes are flushed to the database in batches, each in one
+ * transaction, on a timer, once <code>bookworm.write-behind.batch-size</code> ISBNs are pending and
+ * on shutdown. Changes stay pending until their batch has committed, so a failed batch is retried
+ * on the next flush.
+ */
+@Slf4j
+public class FavouriteWriteBehind {
+  private final boolean enabled;
+  private final int batchSize;
+  private final BookwormRepository repository;
+  private final TransactionOperations transactionOperations;
+  private final Executor flushExecutor;
+  private final ConcurrentMap<String, PendingWrite> pending = new ConcurrentHashMap<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  public FavouriteWriteBehind(
+      boolean enabled,
+      int batchSize,
+      BookwormRepository repository,
+      TransactionOperations transactionOperations,
+      Executor flushExecutor) {
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.repository = repository;
+    this.transactionOperations = transactionOperations;
+    this.flushExecutor = flushExecutor;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues a change, coalescing it with the pending change of the same book
+   *
+   * @param write change to queue
+   */
+  void enqueue(PendingWrite write) {
+    pending.merge(write.book().getIsbn(), write, PendingWrite::then);
+    if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+      try {
+        flushExecutor.execute(
+            () -> {
+              try {
+                flush();
+              } catch (Exception e) {
+                log.error("Flush of pending favourite changes failed, retrying on next flush", e);
+              } finally {
+                flushScheduled.set(false);
+              }
+            });
+      } catch (Exception e) {
+        flushScheduled.set(false);
+        log.error("Could not schedule flush of pending favourite changes", e);
+      }
+    }
+  }
+
+  /**
+   * @return pending changes keyed by ISBN
+   */
+  Map<String, PendingWrite> pending() {
+    return Map.copyOf(pending);
+  }
+
+  /**
+   * @return number of ISBNs with a pending change
+   */
+  int pendingCount() {
+    return pending.size();
+  }
+
+  /** Drops every pending change once a running flush is done, used when the database is purged */
+  void clear() {
+    flushLock.lock();
+    try {
+      pending.clear();
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Applies pending changes to one page of the favourite list read from the database, so that
+   * queued changes are visible before they are flushed. Stored versions of pending books of the
+   * page range are loaded in one query
+   *
+   * @param favourites favourite books as stored in the database, in ISBN order
+   * @param after ISBN of the last book of the previous page, empty for the first page
+   * @param limit maximum number of books of the page
+   * @return favourite books with pending changes applied, in ISBN order
+   */
+  List<FavouriteBook> overlayFavourites(List<FavouriteBook> favourites, String after, int limit) {
+    Map<String, PendingWrite> writes = new HashMap<>(pending());
+    writes.keySet().removeIf(isbn -> isbn.compareTo(after) <= 0);
+    if (writes.isEmpty()) {
+      return favourites.size() > limit ? favourites.subList(0, limit) : favourites;
+    }
+    Map<String, Book> storedBooks =
+        repository.findAllById(writes.keySet()).stream()
+            .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+    SortedMap<String, FavouriteBook> result = new TreeMap<>();
+    favourites.forEach(book -> result.put(book.isbn(), book));
+    writes.forEach(
+        (isbn, write) -> {
+          Book storedBook = storedBooks.get(isbn);
+          Book book = write.applyTo(storedBook == null ? null : storedBook.toBuilder().build());
+          if (book != null && book.isFavourite()) {
+            result.put(isbn, FavouriteBook.of(book));
+          } else {
+            result.remove(isbn);
+          }
+        });
+    return result.values().stream().limit(limit).toList();
+  }
+
+  /** Flushes pending changes on the configured interval */
+  @Scheduled(fixedDelayString = "${bookworm.write-behind.flush-interval}")
+  public void scheduledFlush() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.error("Flush of pending favourite changes failed, retrying on next flush", e);
+    }
+  }
+
+  /** Flushes pending changes before the application context closes */
+  @PreDestroy
+  public void flushOnShutdown() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.error("{} pending favourite changes could not be stored on shutdown", pending.size(), e);
+    }
+  }
+
+  /**
+   * Writes every pending change to the database in batches. Flushes never run concurrently, so a
+   * book's changes are stored in the order they were made
+   */
+  public void flush() {
+    flushLock.lock();
+    try {
+      while (!pending.isEmpty()) {
+        flushBatch();
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Writes one batch of pending changes. The changes stay pending, and so visible to reads, until
+   * the transaction storing them has committed. A change made while the batch is written is
+   * coalesced with the written one and stays pending for the next batch, which is safe because
+   * applying a change to a book it has already been applied to leaves the book as it is
+   */
+  private void flushBatch() {
+    Map<String, PendingWrite> batch = new LinkedHashMap<>();
+    for (Map.Entry<String, PendingWrite> entry : pending.entrySet()) {
+      if (batch.size() >= batchSize) {
+        break;
+      }
+      batch.put(entry.getKey(), entry.getValue());
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    transactionOperations.executeWithoutResult(status -> write(batch));
+    batch.forEach(pending::remove);
+    log.info("Flushed {} pending favourite changes", batch.size());
+  }
+
+  /**
+   * Applies a batch of changes, loading the stored books in one query and writing all changes with
+   * batched statements
+   *
+   * @param batch changes keyed by ISBN
+   */
+  private void write(Map<String, PendingWrite> batch) {
+    Map<String, Book> storedBooks =
+        repository.findAllById(batch.keySet()).stream()
+            .collect(Collectors.toMap(Book::getIsbn, Function.identity()));
+    List<Book> savedBooks = new ArrayList<>();
+    List<Book> deletedBooks = new ArrayList<>();
+    batch.forEach(
+        (isbn, write) -> {
+          Book storedBook = storedBooks.get(isbn);
+          Book book = write.applyTo(storedBook);
+          if (book != null) {
+            savedBooks.add(book);
+          } else if (storedBook != null) {
+            deletedBooks.add(storedBook);
+          }
+        });
+    repository.deleteAll(deletedBooks);
+    repository.saveAll(savedBooks);
+  }
+}
@@ -0,0 +1,40 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.BestsellerIndex;
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hardcoded response returned when New York Times API cannot be reached. It has a dummy book with
+ * the error msg as title, author and book cover to let the user know to try again in a few seconds.
+ * <br>
+ * Loaded from the classpath and indexed once at startup, so serving it needs no I/O.
+ */
+@Slf4j
+@Getter
+@Component
+public class HardcodedBestsellers {
+  private static final String RESPONSE = "response.json";
+
+  private final BestsellerIndex index;
+
+  public HardcodedBestsellers(BestsellerParser parser) {
+    try (InputStream inputStream = new ClassPathResource(RESPONSE).getInputStream()) {
+      Set<Book> books = parser.parseFullOverview(inputStream);
+      index = BestsellerIndex.build(new BestsellerSnapshot(books, Instant.EPOCH), Map.of());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error while parsing hardcoded response " + RESPONSE, e);
+    }
+    log.info("Loaded {} hardcoded bestsellers from {}", index.books().size(), RESPONSE);
+  }
+}
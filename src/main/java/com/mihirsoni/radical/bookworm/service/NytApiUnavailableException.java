@@ -0,0 +1,8 @@
+package com.mihirsoni.radical.bookworm.service;
+
+/** Thrown instead of calling New York Times API while the circuit is open or the quota is spent */
+public class NytApiUnavailableException extends RuntimeException {
+  public NytApiUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,235 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Guards calls to New York Times API.<br>
+ * The circuit opens on 429, 5xx and I/O failures for as long as <code>Retry-After</code> asks, or
+ * with exponential backoff when it does not. Responses that cannot be parsed do not open it. While
+ * open, calls fail immediately with {@link NytApiUnavailableException} so callers can answer from
+ * the last good data. Once the open period ends a single trial call decides whether the circuit
+ * closes again. Independently, token buckets sized to the per-minute and per-day quota keep us from
+ * sending calls NYT would reject anyway.
+ */
+@Slf4j
+public class NytCircuitBreaker {
+  static final String REMAINING_MINUTE = "X-RateLimit-Remaining-Minute";
+  static final String REMAINING_DAY = "X-RateLimit-Remaining-Day";
+
+  private enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final Duration openDuration;
+  private final Duration maxOpenDuration;
+  private final TokenBucket minuteQuota;
+  private final TokenBucket dayQuota;
+  private final Clock clock;
+  private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile Instant openUntil = Instant.MIN;
+  private final LongAdder rateLimitedCount = new LongAdder();
+  private final LongAdder quotaRejectedCount = new LongAdder();
+
+  public NytCircuitBreaker(
+      Duration openDuration,
+      Duration maxOpenDuration,
+      int requestsPerMinute,
+      int requestsPerDay,
+      Clock clock) {
+    this.openDuration = openDuration;
+    this.maxOpenDuration = maxOpenDuration;
+    this.minuteQuota = new TokenBucket(requestsPerMinute, Duration.ofMinutes(1), clock);
+    this.dayQuota = new TokenBucket(requestsPerDay, Duration.ofDays(1), clock);
+    this.clock = clock;
+  }
+
+  /**
+   * Runs a call to New York Times API if the circuit and the quota allow it, recording its outcome
+   *
+   * @param call call to New York Times API
+   * @return result of the call
+   * @param <T> result type
+   * @throws NytApiUnavailableException if the call was not attempted
+   */
+  public <T> T call(Supplier<T> call) {
+    acquirePermission();
+    try {
+      T result = call.get();
+      onSuccess();
+      return result;
+    } catch (RestClientResponseException e) {
+      onFailure(e.getStatusCode(), e.getResponseHeaders());
+      throw e;
+    } catch (ResourceAccessException e) {
+      if (e.getCause() instanceof JsonProcessingException) {
+        // New York Times answered, the response just could not be parsed
+        onSuccess();
+      } else {
+        onFailure(null, null);
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      onSuccess();
+      throw e;
+    }
+  }
+
+  /**
+   * Drains the quota buckets when a response reports the quota as spent
+   *
+   * @param headers headers of a New York Times API response
+   */
+  public void recordQuotaHeaders(HttpHeaders headers) {
+    if ("0".equals(headers.getFirst(REMAINING_MINUTE))) {
+      minuteQuota.drain();
+    }
+    if ("0".equals(headers.getFirst(REMAINING_DAY))) {
+      log.warn("Daily quota of New York Times API is spent");
+      dayQuota.drain();
+    }
+  }
+
+  /**
+   * Lets a call through if the circuit and the quota allow it. Once the open period is over, the
+   * caller winning the switch to half-open makes the trial call, and only then takes quota, so
+   * callers losing the race spend none
+   */
+  private void acquirePermission() {
+    State current = state.get();
+    if (current == State.HALF_OPEN) {
+      throw new NytApiUnavailableException("Trial call to New York Times API in progress");
+    }
+    if (current == State.OPEN) {
+      if (clock.instant().isBefore(openUntil)) {
+        throw new NytApiUnavailableException(
+            "Circuit to New York Times API open until " + openUntil);
+      }
+      if (!state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+        throw new NytApiUnavailableException("Trial call to New York Times API in progress");
+      }
+    }
+    if (!tryConsumeQuota()) {
+      if (current == State.OPEN) {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+      }
+      quotaRejectedCount.increment();
+      throw new NytApiUnavailableException("Client-side quota for New York Times API is spent");
+    }
+  }
+
+  /**
+   * Takes a token of the per-minute and of the per-day quota, or none if either is spent
+   *
+   * @return true if both tokens were taken
+   */
+  private boolean tryConsumeQuota() {
+    if (!minuteQuota.tryConsume()) {
+      return false;
+    }
+    if (!dayQuota.tryConsume()) {
+      minuteQuota.refund();
+      return false;
+    }
+    return true;
+  }
+
+  private void onSuccess() {
+    consecutiveFailures.set(0);
+    if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+      log.info("Circuit to New York Times API closed");
+    }
+  }
+
+  /**
+   * Opens the circuit if the failure means New York Times is rate limiting us or unavailable
+   *
+   * @param status status of the response, null if no response was received
+   * @param headers headers of the response, null if no response was received
+   */
+  private void onFailure(HttpStatusCode status, HttpHeaders headers) {
+    boolean rateLimited =
+        status != null && status.value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    if (status != null && !status.is5xxServerError() && !rateLimited) {
+      onSuccess();
+      return;
+    }
+    if (rateLimited) {
+      rateLimitedCount.increment();
+      minuteQuota.drain();
+    }
+    int failures = consecutiveFailures.incrementAndGet();
+    Duration backoff = retryAfter(headers);
+    if (backoff == null) {
+      backoff = openDuration.multipliedBy(1L << Math.min(failures - 1, 16));
+    }
+    if (backoff.compareTo(maxOpenDuration) > 0) {
+      backoff = maxOpenDuration;
+    }
+    openUntil = clock.instant().plus(backoff);
+    state.set(State.OPEN);
+    log.warn(
+        "Circuit to New York Times API opened for {} after {} (failure {} in a row)",
+        backoff,
+        status == null ? "I/O error" : status,
+        failures);
+  }
+
+  /**
+   * @return number of calls New York Times API answered with 429
+   */
+  public long getRateLimitedCount() {
+    return rateLimitedCount.sum();
+  }
+
+  /**
+   * @return number of calls not attempted because the client-side quota was spent
+   */
+  public long getQuotaRejectedCount() {
+    return quotaRejectedCount.sum();
+  }
+
+  /**
+   * Reads the Retry-After header, given either in seconds or as an HTTP date
+   *
+   * @param headers response headers, may be null
+   * @return time to wait, null if the header is missing or invalid
+   */
+  private Duration retryAfter(HttpHeaders headers) {
+    String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+    if (retryAfter == null || retryAfter.isBlank()) {
+      return null;
+    }
+    try {
+      return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException e) {
+      try {
+        Instant retryAt =
+            ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant();
+        Duration wait = Duration.between(clock.instant(), retryAt);
+        return wait.isNegative() ? Duration.ZERO : wait;
+      } catch (DateTimeParseException e1) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+
+/**
+ * Latest not yet stored favourite and rating/price change of one book. Successive changes are
+ * coalesced field by field, the later one winning. Applying the result mostly gives the same row
+ * as applying every change in order, but not always: removing a favourite and then changing its
+ * rating/price keeps the stored book, unmarked, where applying them in order would delete it and
+ * store the book as sent with the rating/price change.<br>
+ * Applying a change to a book it has already been applied to leaves the book as it is
+ *
+ * @param book book as last sent by the client, used if the book is not stored yet
+ * @param favourite true to mark as favourite, false to remove from favourites, null to leave as is
+ * @param rating new rating, null to leave rating and price as they are
+ * @param price new price, only used with a rating
+ */
+record PendingWrite(Book book, Boolean favourite, Integer rating, Integer price) {
+
+  static PendingWrite favourite(Book book, boolean favourite) {
+    return new PendingWrite(book, favourite, null, null);
+  }
+
+  static PendingWrite ratingAndPrice(Book book) {
+    return new PendingWrite(book, null, book.getRating(), book.getPrice());
+  }
+
+  /**
+   * Coalesces this change with a later one
+   *
+   * @param later change made after this one
+   * @return change with the same effect as this one followed by the later one
+   */
+  PendingWrite then(PendingWrite later) {
+    boolean ratingChanged = later.rating() != null;
+    return new PendingWrite(
+        later.book(),
+        later.favourite() != null ? later.favourite() : favourite,
+        ratingChanged ? later.rating() : rating,
+        ratingChanged ? later.price() : price);
+  }
+
+  /**
+   * Applies the change the way {@link BookwormService} applies single changes: a rating/price
+   * change stores the book, a favourite stores it and removing a favourite deletes it unless its
+   * rating/price has been changed
+   *
+   * @param storedBook stored version of the book, modified in place, null if not stored
+   * @return book to store, null if no row should exist for the book
+   */
+  Book applyTo(Book storedBook) {
+    Book result = storedBook;
+    if (rating != null) {
+      if (result == null) {
+        result = book.toBuilder().build();
+      }
+      result.setRating(rating);
+      result.setPrice(price);
+      result.setRatingPriceChanged(true);
+    }
+    if (Boolean.TRUE.equals(favourite)) {
+      if (result == null) {
+        result = book.toBuilder().build();
+      }
+      result.setFavourite(true);
+    } else if (Boolean.FALSE.equals(favourite) && result != null) {
+      if (!result.isRatingPriceChanged()) {
+        return null;
+      }
+      result.setFavourite(false);
+    }
+    return result;
+  }
+}
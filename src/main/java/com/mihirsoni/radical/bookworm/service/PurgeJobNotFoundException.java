@@ -0,0 +1,8 @@
+package com.mihirsoni.radical.bookworm.service;
+
+/** Thrown when the status of a purge job is requested that does not exist or is no longer kept */
+public class PurgeJobNotFoundException extends RuntimeException {
+  public PurgeJobNotFoundException(String id) {
+    super("No purge job with id " + id);
+  }
+}
@@ -0,0 +1,71 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs purges of the database off the request path and keeps the status of the most recent {@value
+ * #MAX_JOBS} of them, so that clients can poll a purge by its job id
+ */
+@Slf4j
+public class PurgeJobs {
+  static final int MAX_JOBS = 100;
+
+  private final Executor executor;
+  private final Map<String, PurgeJob> jobs =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PurgeJob> eldest) {
+              return size() > MAX_JOBS;
+            }
+          });
+
+  public PurgeJobs(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Submits a purge to run in the background
+   *
+   * @param purge purges the database, returns the number of deleted books
+   * @return the job, running until the purge finishes
+   */
+  public PurgeJob submit(IntSupplier purge) {
+    PurgeJob job = PurgeJob.running(UUID.randomUUID().toString(), Instant.now());
+    jobs.put(job.id(), job);
+    try {
+      executor.execute(() -> run(job, purge));
+    } catch (Exception e) {
+      jobs.put(job.id(), job.failed(e.toString(), Instant.now()));
+      throw e;
+    }
+    return get(job.id()).orElse(job);
+  }
+
+  /**
+   * @param id id of a job
+   * @return the job, empty if there is no such job or it is no longer kept
+   */
+  public Optional<PurgeJob> get(String id) {
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  private void run(PurgeJob job, IntSupplier purge) {
+    try {
+      int deletedBooks = purge.getAsInt();
+      jobs.put(job.id(), job.succeeded(deletedBooks, Instant.now()));
+    } catch (Exception e) {
+      log.error("Purge job {} failed", job.id(), e);
+      jobs.put(job.id(), job.failed(e.toString(), Instant.now()));
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Time spent in each stage of the bestseller pipeline by the request handled on the current
+ * thread, rendered as a <code>Server-Timing</code> header.<br>
+ * Stages run on other threads, such as background refreshes, are not attributed to any request.
+ */
+public final class RequestTimings {
+  /** Stages of the pipeline, in header order */
+  public enum Stage {
+    NYT("nyt", "New York Times API, incl. parse"),
+    PARSE("parse", "Parse"),
+    DB("db", "Database"),
+    SERIALIZE("serialize", "Serialization");
+
+    private final String metric;
+    private final String description;
+
+    Stage(String metric, String description) {
+      this.metric = metric;
+      this.description = description;
+    }
+  }
+
+  private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+  private final long[] nanos = new long[Stage.values().length];
+  private final int[] counts = new int[Stage.values().length];
+
+  private RequestTimings() {}
+
+  /**
+   * Starts recording the stages run on the current thread
+   *
+   * @return timings of the request
+   */
+  public static RequestTimings start() {
+    RequestTimings timings = new RequestTimings();
+    CURRENT.set(timings);
+    return timings;
+  }
+
+  /** Stops recording the stages run on the current thread */
+  public static void end() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Adds time spent in a stage to the request handled on the current thread, if any
+   *
+   * @param stage stage of the pipeline
+   * @param nanos time spent in nanoseconds
+   */
+  public static void record(Stage stage, long nanos) {
+    RequestTimings timings = CURRENT.get();
+    if (timings != null) {
+      timings.nanos[stage.ordinal()] += nanos;
+      timings.counts[stage.ordinal()]++;
+    }
+  }
+
+  /**
+   * @param stage stage of the pipeline
+   * @return time spent in the stage in nanoseconds
+   */
+  public long nanos(Stage stage) {
+    return nanos[stage.ordinal()];
+  }
+
+  /**
+   * Renders the stages the request went through, followed by its total time
+   *
+   * @param totalNanos time the whole request took in nanoseconds
+   * @return value of the <code>Server-Timing</code> header
+   */
+  public String toServerTiming(long totalNanos) {
+    StringJoiner header = new StringJoiner(", ");
+    for (Stage stage : Stage.values()) {
+      if (counts[stage.ordinal()] > 0) {
+        header.add(
+            String.format(
+                Locale.ROOT,
+                "%s;desc=\"%s\";dur=%.1f",
+                stage.metric,
+                stage.description,
+                millis(nanos[stage.ordinal()])));
+      }
+    }
+    header.add(String.format(Locale.ROOT, "total;dur=%.1f", millis(totalNanos)));
+    return header.toString();
+  }
+
+  /**
+   * @return stages the request went through with their time and number of runs, for logging
+   */
+  @Override
+  public String toString() {
+    StringJoiner stages = new StringJoiner(", ");
+    for (Stage stage : Stage.values()) {
+      if (counts[stage.ordinal()] > 0) {
+        stages.add(
+            String.format(
+                Locale.ROOT,
+                "%s %.1f ms (%dx)",
+                stage.metric,
+                millis(nanos[stage.ordinal()]),
+                counts[stage.ordinal()]));
+      }
+    }
+    return stages.length() == 0 ? "no pipeline stages" : stages.toString();
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
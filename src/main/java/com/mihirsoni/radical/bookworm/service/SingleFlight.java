@@ -0,0 +1,101 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deduplicates concurrent loads of the same key.<br>
+ * The first caller for a key runs the loader, callers arriving while it runs join its future
+ * instead of starting their own load, and all of them get the same result or exception.
+ *
+ * @param <K> key type
+ * @param <V> loaded value type
+ */
+@Slf4j
+public class SingleFlight<K, V> {
+  private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder flights = new LongAdder();
+  private final LongAdder coalescedCalls = new LongAdder();
+
+  /**
+   * Runs the loader for the key unless a load of the same key is already running, in which case
+   * waits for that load instead
+   *
+   * @param key key of the load
+   * @param loader loads the value, may throw
+   * @return loaded value
+   */
+  public V execute(K key, Supplier<V> loader) {
+    Flight<V> flight = new Flight<>(new CompletableFuture<>(), new AtomicInteger());
+    Flight<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      existing.joined().incrementAndGet();
+      coalescedCalls.increment();
+      return join(existing.future());
+    }
+
+    flights.increment();
+    try {
+      V value = loader.get();
+      flight.future().complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      flight.future().completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+      if (flight.joined().get() > 0) {
+        log.info("Load of {} was shared with {} coalesced callers", key, flight.joined().get());
+      }
+    }
+  }
+
+  /**
+   * checks if a load of the key is currently running
+   *
+   * @param key key of the load
+   * @return true if a load is running
+   */
+  public boolean isInFlight(K key) {
+    return inFlight.containsKey(key);
+  }
+
+  /**
+   * @return number of loads that actually ran the loader
+   */
+  public long getFlightCount() {
+    return flights.sum();
+  }
+
+  /**
+   * @return number of calls that joined an already running load instead of starting one
+   */
+  public long getCoalescedCount() {
+    return coalescedCalls.sum();
+  }
+
+  /**
+   * Waits for a load started by another caller, rethrowing its exception as is
+   *
+   * @param future future of the running load
+   * @return loaded value
+   */
+  private V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private record Flight<V>(CompletableFuture<V> future, AtomicInteger joined) {}
+}
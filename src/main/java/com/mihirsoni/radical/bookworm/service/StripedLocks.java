@@ -0,0 +1,70 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks keyed by hash, so that work on the same key is serialised while work on
+ * different keys runs in parallel without a lock per key. Several keys are always locked in stripe
+ * order, which rules out deadlocks between callers locking overlapping keys.
+ */
+public class StripedLocks {
+  private final ReentrantLock[] stripes;
+
+  /**
+   * @param stripes minimum number of locks, rounded up to a power of two
+   */
+  public StripedLocks(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Runs an action holding the lock of a key
+   *
+   * @param key key to lock
+   * @param action action to run
+   */
+  public void withLock(String key, Runnable action) {
+    ReentrantLock lock = stripes[stripe(key)];
+    lock.lock();
+    try {
+      action.run();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs an action holding the locks of several keys
+   *
+   * @param keys keys to lock
+   * @param action action to run
+   * @return result of the action
+   * @param <T> result type
+   */
+  public <T> T withLocks(Collection<String> keys, Supplier<T> action) {
+    int[] locked = keys.stream().mapToInt(this::stripe).distinct().sorted().toArray();
+    int acquired = 0;
+    try {
+      for (int stripe : locked) {
+        stripes[stripe].lock();
+        acquired++;
+      }
+      return action.get();
+    } finally {
+      for (int i = acquired - 1; i >= 0; i--) {
+        stripes[locked[i]].unlock();
+      }
+    }
+  }
+
+  private int stripe(String key) {
+    int hash = key == null ? 0 : key.hashCode();
+    return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+  }
+}
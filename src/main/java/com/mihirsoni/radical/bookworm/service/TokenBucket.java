@@ -0,0 +1,53 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/** Client-side rate limiter refilling its capacity evenly over a period */
+public class TokenBucket {
+  private final int capacity;
+  private final double tokensPerMilli;
+  private final Clock clock;
+  private double tokens;
+  private long lastRefill;
+
+  public TokenBucket(int capacity, Duration period, Clock clock) {
+    this.capacity = capacity;
+    this.tokensPerMilli = (double) capacity / period.toMillis();
+    this.clock = clock;
+    this.tokens = capacity;
+    this.lastRefill = clock.millis();
+  }
+
+  /**
+   * Takes a token if one is available
+   *
+   * @return true if a token was taken
+   */
+  public synchronized boolean tryConsume() {
+    refill();
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  /** Puts back a token taken for a call that was not sent after all */
+  public synchronized void refund() {
+    refill();
+    tokens = Math.min(capacity, tokens + 1);
+  }
+
+  /** Empties the bucket, used when the server reports the quota as spent */
+  public synchronized void drain() {
+    refill();
+    tokens = 0;
+  }
+
+  private void refill() {
+    long now = clock.millis();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMilli);
+    lastRefill = now;
+  }
+}
@@ -1,6 +1,6 @@
 package com.mihirsoni.radical.bookworm.utils;
 
 public class Constants {
-  public static final String GET_FULL_OVERVIEW =
-      "https://api.nytimes.com/svc/books/v3/lists/full-overview.json";
+  public static final String GET_FULL_OVERVIEW = "/svc/books/v3/lists/full-overview.json";
+  public static final String GET_CURRENT_LIST = "/svc/books/v3/lists/current/{list}.json";
 }
@@ -0,0 +1,32 @@
+package com.mihirsoni.radical.bookworm;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = "bookworm.cache.statistics-enabled=true")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ActuatorEndpointTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  /** Checks if pipeline, rate limit and second-level cache meters are served to Prometheus */
+  @Test
+  void Actuator_GetPrometheus_ReturnsBookwormMeters() throws Exception {
+    mockMvc
+        .perform(get("/actuator/prometheus"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("bookworm_snapshot_loads_total")))
+        .andExpect(content().string(containsString("bookworm_nyt_rate_limits_total")))
+        .andExpect(content().string(containsString("hibernate_second_level_cache_requests")));
+  }
+}
@@ -0,0 +1,81 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class BookwormConfigurationTest {
+  private static final int FETCH_CONCURRENCY = 2;
+  private static final int FETCHES = 10;
+
+  private final BookwormConfiguration configuration = new BookwormConfiguration();
+
+  /** Checks if list fetches run on a bounded pool of platform threads by default */
+  @Test
+  void BookwormConfiguration_NytFetchExecutor_UsesThreadPoolByDefault() {
+    ReflectionTestUtils.setField(configuration, "fetchConcurrency", FETCH_CONCURRENCY);
+
+    AsyncTaskExecutor executor = configuration.nytFetchExecutor(new MockEnvironment());
+
+    ThreadPoolTaskExecutor pool = assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+    assertEquals(FETCH_CONCURRENCY, pool.getMaxPoolSize());
+  }
+
+  /**
+   * Checks if list fetches run on virtual threads, at most <code>fetch-concurrency</code> at once,
+   * once virtual threads are enabled
+   *
+   * @throws Exception if interrupted while waiting for the fetches
+   */
+  @Test
+  void BookwormConfiguration_NytFetchExecutorWithVirtualThreads_BoundsConcurrency()
+      throws Exception {
+    assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+    ReflectionTestUtils.setField(configuration, "fetchConcurrency", FETCH_CONCURRENCY);
+    MockEnvironment environment =
+        new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+    AsyncTaskExecutor executor = configuration.nytFetchExecutor(environment);
+
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger virtual = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(FETCHES);
+    for (int i = 0; i < FETCHES; i++) {
+      executor.execute(
+          () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            if (isVirtual(Thread.currentThread())) {
+              virtual.incrementAndGet();
+            }
+            try {
+              Thread.sleep(20);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(FETCHES, virtual.get());
+    assertEquals(FETCH_CONCURRENCY, maxRunning.get());
+  }
+
+  /** The build targets Java 17, so <code>Thread.isVirtual()</code> is looked up at runtime */
+  private static boolean isVirtual(Thread thread) {
+    try {
+      return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/** Runs the outbound client modes against a local stub of New York Times API */
+@Slf4j
+public class HttpClientConfigTest {
+  private static final int REQUESTS = 20;
+
+  private HttpServer server;
+  private String uri;
+  private byte[] responseBody;
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final Set<String> acceptEncodings = ConcurrentHashMap.newKeySet();
+  private volatile long delayMillis;
+
+  @BeforeEach
+  void startStubServer() throws IOException {
+    responseBody = Files.readAllBytes(Paths.get("src/test/resources/external_response.json"));
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(responseBody);
+    }
+    byte[] gzipBody = compressed.toByteArray();
+
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/svc/books/v3/lists/full-overview.json",
+        exchange -> {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+          String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+          acceptEncodings.add(acceptEncoding == null ? "" : acceptEncoding);
+          sleep(delayMillis);
+          boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+          byte[] body = gzip ? gzipBody : responseBody;
+          exchange.getResponseHeaders().set("Content-Type", "application/json");
+          if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+          }
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+          }
+        });
+    server.createContext(
+        "/empty",
+        exchange -> {
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.start();
+    uri =
+        "http://localhost:"
+            + server.getAddress().getPort()
+            + "/svc/books/v3/lists/full-overview.json";
+  }
+
+  @AfterEach
+  void stopStubServer() {
+    server.stop(0);
+  }
+
+  /** Checks if the pooled client requests gzip, decompresses it and reuses its connection */
+  @Test
+  void HttpClientConfig_PooledClient_ReusesConnectionAndDecompressesGzip() {
+    RestTemplate restTemplate =
+        new RestTemplate(
+            HttpClientConfig.pooledRequestFactory(
+                Duration.ofSeconds(2), Duration.ofSeconds(5), 5, Duration.ofSeconds(30)));
+
+    long averageMicros = measure(restTemplate);
+
+    log.info("Pooled Apache client: {} µs per call", averageMicros);
+    assertEquals(1, clientPorts.size());
+    assertTrue(acceptEncodings.stream().allMatch(encoding -> encoding.contains("gzip")));
+  }
+
+  /** Checks if the JDK client requests gzip, decompresses it and reuses its connection */
+  @Test
+  void HttpClientConfig_JdkClient_ReusesConnectionAndDecompressesGzip() {
+    RestTemplate restTemplate =
+        new RestTemplate(
+            HttpClientConfig.jdkRequestFactory(Duration.ofSeconds(2), Duration.ofSeconds(5)));
+    restTemplate.getInterceptors().add(HttpClientConfig.gzipInterceptor());
+
+    long averageMicros = measure(restTemplate);
+
+    log.info("JDK client: {} µs per call", averageMicros);
+    assertEquals(1, clientPorts.size());
+    assertTrue(acceptEncodings.stream().allMatch(encoding -> encoding.contains("gzip")));
+  }
+
+  /** Checks if the gzip interceptor passes on an empty body marked as gzip instead of failing */
+  @Test
+  void HttpClientConfig_EmptyGzipBody_ReturnsNoBody() {
+    RestTemplate restTemplate =
+        new RestTemplate(
+            HttpClientConfig.jdkRequestFactory(Duration.ofSeconds(2), Duration.ofSeconds(5)));
+    restTemplate.getInterceptors().add(HttpClientConfig.gzipInterceptor());
+
+    ResponseEntity<byte[]> response =
+        restTemplate.getForEntity(
+            "http://localhost:" + server.getAddress().getPort() + "/empty", byte[].class);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertNull(response.getBody());
+  }
+
+  /** Measures the previous unpooled, uncompressed client as a baseline */
+  @Test
+  void HttpClientConfig_SimpleClient_Baseline() {
+    RestTemplate restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+
+    long averageMicros = measure(restTemplate);
+
+    log.info("Simple client (previous default): {} µs per call", averageMicros);
+  }
+
+  /** Checks if a slow response fails after the read timeout instead of pinning the caller */
+  @Test
+  void HttpClientConfig_SlowResponse_TimesOut() {
+    delayMillis = 2000;
+    RestTemplate restTemplate =
+        new RestTemplate(
+            HttpClientConfig.pooledRequestFactory(
+                Duration.ofSeconds(2), Duration.ofMillis(200), 5, Duration.ofSeconds(30)));
+
+    long start = System.nanoTime();
+    assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(uri, byte[].class));
+
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1500);
+  }
+
+  /**
+   * Calls the stub server sequentially and checks every response body
+   *
+   * @param restTemplate client under test
+   * @return average latency of a call in microseconds
+   */
+  private long measure(RestTemplate restTemplate) {
+    restTemplate.getForObject(uri, byte[].class);
+    long start = System.nanoTime();
+    for (int i = 0; i < REQUESTS; i++) {
+      assertArrayEquals(responseBody, restTemplate.getForObject(uri, byte[].class));
+    }
+    return (System.nanoTime() - start) / REQUESTS / 1000;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import java.util.HashMap;
+import java.util.Map;
+import javax.cache.CacheManager;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+
+public class SecondLevelCacheConfigTest {
+
+  private final HibernatePropertiesCustomizer customizer =
+      new SecondLevelCacheConfig().cacheManagerPerContext();
+
+  /**
+   * Checks if every context gets its own cache manager with the configured regions, so closing
+   * one leaves the caches of the others open
+   */
+  @Test
+  void SecondLevelCacheConfig_TwoContexts_GetSeparateCacheManagers() {
+    CacheManager first = cacheManager();
+    CacheManager second = cacheManager();
+
+    assertNotSame(first, second);
+    first.close();
+    assertTrue(first.isClosed());
+    assertFalse(second.isClosed());
+    assertNotNull(second.getCache("books"));
+    second.close();
+  }
+
+  private CacheManager cacheManager() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(ConfigSettings.PROVIDER, CaffeineCachingProvider.class.getName());
+    customizer.customize(properties);
+    return (CacheManager) properties.get(ConfigSettings.CACHE_MANAGER);
+  }
+}
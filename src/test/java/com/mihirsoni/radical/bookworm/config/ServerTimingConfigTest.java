@@ -0,0 +1,44 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.controller.ServerTimingFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+public class ServerTimingConfigTest {
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withBean(
+              "conversionService",
+              ConversionService.class,
+              ApplicationConversionService::getSharedInstance)
+          .withBean(ObjectMapper.class)
+          .withUserConfiguration(ServerTimingConfig.class)
+          .withPropertyValues("bookworm.server-timing.slow-request-threshold=PT0S");
+
+  /** Checks if the timing hooks are only registered when Server-Timing is enabled */
+  @Test
+  void ServerTimingConfig_Enabled_RegistersTimingHooks() {
+    contextRunner
+        .withPropertyValues("bookworm.server-timing.enabled=true")
+        .run(
+            context -> {
+              assertThat(context).hasSingleBean(ServerTimingFilter.class);
+              assertThat(context).hasBean("repositoryTimingPostProcessor");
+              assertThat(context).hasSingleBean(MappingJackson2HttpMessageConverter.class);
+            });
+    contextRunner
+        .withPropertyValues("bookworm.server-timing.enabled=false")
+        .run(
+            context -> {
+              assertThat(context).hasSingleBean(ServerTimingFilter.class);
+              assertThat(context).doesNotHaveBean("repositoryTimingPostProcessor");
+              assertThat(context).doesNotHaveBean(MappingJackson2HttpMessageConverter.class);
+            });
+  }
+}
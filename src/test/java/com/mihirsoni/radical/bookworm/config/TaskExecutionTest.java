@@ -0,0 +1,32 @@
+package com.mihirsoni.radical.bookworm.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@SpringBootTest
+public class TaskExecutionTest {
+
+  @Autowired
+  @Qualifier("applicationTaskExecutor")
+  private AsyncTaskExecutor applicationTaskExecutor;
+
+  @Autowired private RequestMappingHandlerAdapter handlerAdapter;
+
+  /** Checks if async requests run on the bounded application executor next to our own executors */
+  @Test
+  void TaskExecution_AsyncRequests_UseApplicationTaskExecutor() {
+    ThreadPoolTaskExecutor executor =
+        assertInstanceOf(ThreadPoolTaskExecutor.class, applicationTaskExecutor);
+
+    assertSame(executor, ReflectionTestUtils.getField(handlerAdapter, "taskExecutor"));
+    assertEquals("task-", executor.getThreadNamePrefix());
+  }
+}
@@ -1,14 +1,30 @@
 package com.mihirsoni.radical.bookworm.controller;
 
 import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.dto.FavouritePage;
+import com.mihirsoni.radical.bookworm.dto.InvalidBestsellerQueryException;
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
 import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.service.BestsellerListNotFoundException;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache.EncodedBestsellers;
 import com.mihirsoni.radical.bookworm.service.BookwormService;
+import com.mihirsoni.radical.bookworm.service.PurgeJobNotFoundException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,6 +35,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
@@ -35,12 +52,235 @@ class BookwormControllerTest {
   @Test
   void BookwormController_GetAllBestsellers_ReturnsSetOfBestsellers() throws Exception {
     Book book1 = createBook(3, 10, true, true);
+    byte[] json = objectMapper.writeValueAsBytes(Set.of(book1));
 
-    when(service.fetchAllBestsellersAcrossCategoriesFromNYTAPI()).thenReturn(Set.of(book1));
+    when(service.fetchEncodedBestsellers())
+        .thenReturn(new EncodedBestsellers(1, "b1", json, new byte[] {1, 2, 3}));
 
     ResultActions response = mockMvc.perform(get("/api/v1/books/get-all-bestsellers"));
 
-    response.andExpect(MockMvcResultMatchers.status().isOk());
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.header().doesNotExist("Content-Encoding"))
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].isbn").value(book1.getIsbn()));
+  }
+
+  /** Checks if get-all-bestsellers call sends the gzipped bytes to a client accepting gzip */
+  @Test
+  void BookwormController_GetAllBestsellersAcceptingGzip_ReturnsGzippedBytes() throws Exception {
+    byte[] gzip = {1, 2, 3};
+    when(service.fetchEncodedBestsellers())
+        .thenReturn(new EncodedBestsellers(1, "b1", new byte[] {'[', ']'}, gzip));
+
+    ResultActions response =
+        mockMvc.perform(
+            get("/api/v1/books/get-all-bestsellers").header("Accept-Encoding", "br, gzip;q=0.8"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.header().string("Content-Encoding", "gzip"))
+        .andExpect(MockMvcResultMatchers.header().string("ETag", "\"b1-gzip\""))
+        .andExpect(MockMvcResultMatchers.content().bytes(gzip));
+  }
+
+  /** Checks if get-all-bestsellers call returns Not Modified without a body for a current ETag */
+  @Test
+  void BookwormController_GetAllBestsellersWithCurrentETag_ReturnsNotModified() throws Exception {
+    when(service.fetchEncodedBestsellers())
+        .thenReturn(new EncodedBestsellers(1, "b1", new byte[] {'[', ']'}, new byte[] {1, 2, 3}));
+
+    ResultActions response =
+        mockMvc.perform(get("/api/v1/books/get-all-bestsellers").header("If-None-Match", "\"b1\""));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isNotModified())
+        .andExpect(MockMvcResultMatchers.header().string("ETag", "\"b1\""))
+        .andExpect(MockMvcResultMatchers.content().bytes(new byte[0]));
+  }
+
+  /** Checks if get-favourites call returns the favourites with their ETag for an outdated ETag */
+  @Test
+  void BookwormController_GetFavouritesWithOutdatedETag_ReturnsFavourites() throws Exception {
+    when(service.getFavouritesETag()).thenReturn("f2");
+    when(service.getFavouriteList(null))
+        .thenReturn(List.of(FavouriteBook.of(createBook(3, 10, true, false))));
+
+    ResultActions response =
+        mockMvc.perform(get("/api/v1/books/get-favourites").header("If-None-Match", "\"f1\""));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.header().string("ETag", "\"f2\""))
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].favourite").value(true));
+  }
+
+  /** Checks if get-favourites call without a limit returns every favourite, not just one page */
+  @Test
+  void BookwormController_GetFavouritesWithoutLimit_ReturnsAllFavourites() throws Exception {
+    List<FavouriteBook> favourites = new ArrayList<>();
+    for (int i = 0; i < BookwormService.MAX_FAVOURITES_LIMIT + 50; i++) {
+      Book book = createBook(3, 10, true, false);
+      book.setIsbn(String.format("%013d", i));
+      favourites.add(FavouriteBook.of(book));
+    }
+    when(service.getFavouritesETag()).thenReturn("f1");
+    when(service.getFavouriteList(null)).thenReturn(favourites);
+
+    ResultActions response = mockMvc.perform(get("/api/v1/books/get-favourites"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(favourites.size()))
+        .andExpect(MockMvcResultMatchers.header().doesNotExist("Link"));
+  }
+
+  /** Checks if get-favourites call with a limit links to the next page while there is one */
+  @Test
+  void BookwormController_GetFavouritesPage_LinksNextPage() throws Exception {
+    Book book = createBook(3, 10, true, false);
+    when(service.getFavouritesETag()).thenReturn("f1");
+    when(service.getFavouritePage("100", 1))
+        .thenReturn(new FavouritePage(List.of(FavouriteBook.of(book)), book.getIsbn()));
+
+    ResultActions response =
+        mockMvc.perform(
+            get("/api/v1/books/get-favourites").param("after", "100").param("limit", "1"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].isbn").value(book.getIsbn()))
+        .andExpect(
+            MockMvcResultMatchers.header()
+                .string(
+                    "Link",
+                    "<http://localhost/api/v1/books/get-favourites?after=123&limit=1>; rel=\"next\""));
+  }
+
+  /** Checks if stream-bestsellers call writes one JSON book per line as lists are streamed */
+  @Test
+  void BookwormController_StreamBestsellers_WritesNdjson() throws Exception {
+    Book book1 = createBook(3, 10, true, true);
+    Book book2 = createBook(1, 24, false, false);
+    book2.setIsbn("456");
+    doAnswer(
+            invocation -> {
+              Consumer<List<Book>> listConsumer = invocation.getArgument(0);
+              listConsumer.accept(List.of(book1));
+              listConsumer.accept(List.of(book2));
+              return null;
+            })
+        .when(service)
+        .streamBestsellers(any());
+
+    MvcResult result =
+        mockMvc
+            .perform(get("/api/v1/books/stream-bestsellers"))
+            .andExpect(MockMvcResultMatchers.request().asyncStarted())
+            .andReturn();
+    ResultActions response = mockMvc.perform(asyncDispatch(result));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"));
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("456", objectMapper.readValue(lines[1], Book.class).getIsbn());
+  }
+
+  /** Checks if get-bestsellers-page call passes the query parameters to the service */
+  @Test
+  void BookwormController_GetBestsellersPage_ReturnsPageOfBestsellers() throws Exception {
+    BestsellerQuery query =
+        new BestsellerQuery(
+            "list-a", null, 5, null, null, BestsellerQuery.Sort.PRICE, true, null, 2);
+    when(service.queryBestsellers(query))
+        .thenReturn(new BestsellerPage(List.of(createBook(3, 10, false, false)), 3, "123"));
+
+    ResultActions response =
+        mockMvc.perform(
+            get("/api/v1/books/get-bestsellers-page")
+                .param("list", "list-a")
+                .param("minPrice", "5")
+                .param("sort", "PRICE")
+                .param("descending", "true")
+                .param("limit", "2"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(3))
+        .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").value("123"));
+  }
+
+  /** Checks if get-bestsellers-page call return Bad Request status for an unknown sort key */
+  @Test
+  void BookwormController_GetBestsellersPageWithUnknownSort_ReturnsBadRequest() throws Exception {
+    ResultActions response =
+        mockMvc.perform(get("/api/v1/books/get-bestsellers-page").param("sort", "ISBN"));
+
+    response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+  }
+
+  /** Checks if get-bestsellers-page call return Bad Request status for an unknown cursor */
+  @Test
+  void BookwormController_GetBestsellersPageWithUnknownCursor_ReturnsBadRequest() throws Exception {
+    when(service.queryBestsellers(any()))
+        .thenThrow(new InvalidBestsellerQueryException("Unknown cursor 999"));
+
+    ResultActions response =
+        mockMvc.perform(get("/api/v1/books/get-bestsellers-page").param("after", "999"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isBadRequest())
+        .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Unknown cursor 999"));
+  }
+
+  /** Checks if get-bestsellers-page call return Bad Request status for an empty price range */
+  @Test
+  void BookwormController_GetBestsellersPageWithEmptyPriceRange_ReturnsBadRequest()
+      throws Exception {
+    ResultActions response =
+        mockMvc.perform(
+            get("/api/v1/books/get-bestsellers-page")
+                .param("minPrice", "20")
+                .param("maxPrice", "10"));
+
+    response.andExpect(MockMvcResultMatchers.status().isBadRequest());
+  }
+
+  /** Checks if an internal IllegalArgumentException is a server error, not a client error */
+  @Test
+  void BookwormController_GetBestsellersPageFailingInternally_ReturnsServerError()
+      throws Exception {
+    when(service.queryBestsellers(any())).thenThrow(new IllegalArgumentException("Internal"));
+
+    ResultActions response = mockMvc.perform(get("/api/v1/books/get-bestsellers-page"));
+
+    response.andExpect(MockMvcResultMatchers.status().isInternalServerError());
+  }
+
+  /** Checks if get-bestsellers call return OK status for happy path */
+  @Test
+  void BookwormController_GetBestsellersOfList_ReturnsListOfBestsellers() throws Exception {
+    Book book1 = createBook(3, 10, true, true);
+
+    when(service.fetchBestsellersOfList("list-a")).thenReturn(List.of(book1));
+
+    ResultActions response = mockMvc.perform(get("/api/v1/books/get-bestsellers/list-a"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].encodedListName").value("list-a"));
+  }
+
+  /** Checks if get-bestsellers call return Not Found status for an unknown list */
+  @Test
+  void BookwormController_GetBestsellersOfUnknownList_ReturnsNotFound() throws Exception {
+    when(service.fetchBestsellersOfList("no-such-list"))
+        .thenThrow(new BestsellerListNotFoundException("no-such-list"));
+
+    ResultActions response = mockMvc.perform(get("/api/v1/books/get-bestsellers/no-such-list"));
+
+    response.andExpect(MockMvcResultMatchers.status().isNotFound());
   }
 
   /** Checks if add-to-favourites call return OK status for happy path */
@@ -60,6 +300,25 @@ class BookwormControllerTest {
         .andExpect(MockMvcResultMatchers.content().string(""));
   }
 
+  /** Checks if bulk add-to-favourites call returns the outcome of every book */
+  @Test
+  void BookwormController_BulkAddToFavourites_ReturnsOutcomes() throws Exception {
+    Book book = createBook(3, 10, false, false);
+    when(service.addAllToFavourite(List.of(book)))
+        .thenReturn(List.of(new BulkOutcome(book.getIsbn(), BulkOutcome.Status.ADDED)));
+
+    ResultActions response =
+        mockMvc.perform(
+            post("/api/v1/books/bulk/add-to-favourites")
+                .contentType("application/json")
+                .content(objectMapper.writeValueAsBytes(List.of(book))));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isOk())
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].isbn").value("123"))
+        .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("ADDED"));
+  }
+
   /** Checks if remove-from-favourites call return OK status for happy path */
   @Test
   void BookwormController_RemoveFromFavourites_RemovesBookFromFavourites() throws Exception {
@@ -103,4 +362,30 @@ class BookwormControllerTest {
         .andExpect(MockMvcResultMatchers.status().isOk())
         .andExpect(MockMvcResultMatchers.content().string(""));
   }
+
+  /** Checks if an asynchronous purge-database call returns Accepted with the job to poll */
+  @Test
+  void BookwormController_PurgeDatabaseAsync_ReturnsAcceptedJob() throws Exception {
+    when(service.purgeDatabaseAsync()).thenReturn(PurgeJob.running("job-1", Instant.EPOCH));
+
+    ResultActions response =
+        mockMvc.perform(delete("/api/v1/books/purge-database").param("async", "true"));
+
+    response
+        .andExpect(MockMvcResultMatchers.status().isAccepted())
+        .andExpect(
+            MockMvcResultMatchers.header().string("Location", "/api/v1/books/purge-jobs/job-1"))
+        .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("RUNNING"));
+  }
+
+  /** Checks if purge-jobs call return Not Found status for an unknown job */
+  @Test
+  void BookwormController_GetUnknownPurgeJob_ReturnsNotFound() throws Exception {
+    when(service.getPurgeJob("no-such-job"))
+        .thenThrow(new PurgeJobNotFoundException("no-such-job"));
+
+    ResultActions response = mockMvc.perform(get("/api/v1/books/purge-jobs/no-such-job"));
+
+    response.andExpect(MockMvcResultMatchers.status().isNotFound());
+  }
 }
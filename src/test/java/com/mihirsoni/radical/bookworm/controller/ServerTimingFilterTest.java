@@ -0,0 +1,116 @@
+package com.mihirsoni.radical.bookworm.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.mihirsoni.radical.bookworm.service.RequestTimings;
+import com.mihirsoni.radical.bookworm.service.RequestTimings.Stage;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletResponse;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ServerTimingFilterTest {
+  private final FilterChain chain =
+      (request, response) -> {
+        RequestTimings.record(Stage.NYT, 5_000_000);
+        RequestTimings.record(Stage.DB, 1_000_000);
+        RequestTimings.record(Stage.DB, 1_000_000);
+        response.getWriter().write("[]");
+      };
+
+  /** Checks if the stages of a request are sent as Server-Timing header along with the body */
+  @Test
+  void ServerTimingFilter_Enabled_AddsServerTimingHeader() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new ServerTimingFilter(true, Duration.ZERO)
+        .doFilter(request("/api/v1/books/get-favourites"), response, chain);
+
+    String serverTiming = response.getHeader(ServerTimingFilter.SERVER_TIMING);
+    assertNotNull(serverTiming);
+    assertTrue(serverTiming.startsWith("nyt;desc=\"New York Times API, incl. parse\";dur=5.0, "));
+    assertTrue(serverTiming.contains("db;desc=\"Database\";dur=2.0, total;dur="));
+    assertFalse(serverTiming.contains("serialize"));
+    assertEquals("*", response.getHeader(ServerTimingFilter.TIMING_ALLOW_ORIGIN));
+    assertEquals("[]", response.getContentAsString());
+  }
+
+  /** Checks if no header is sent and nothing is buffered unless the header is enabled */
+  @Test
+  void ServerTimingFilter_Disabled_LeavesResponseAlone() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new ServerTimingFilter(false, Duration.ofSeconds(1))
+        .doFilter(request("/api/v1/books/get-favourites"), response, chain);
+
+    assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+    assertEquals("[]", response.getContentAsString());
+  }
+
+  /** Checks if streamed bestsellers are not buffered to add the header */
+  @Test
+  void ServerTimingFilter_StreamBestsellers_LeavesResponseAlone() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new ServerTimingFilter(true, Duration.ZERO)
+        .doFilter(request("/api/v1/books/stream-bestsellers"), response, chain);
+
+    assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+    assertEquals("[]", response.getContentAsString());
+  }
+
+  /** Checks if the body is written through with the header set before its first byte */
+  @Test
+  void ServerTimingFilter_Enabled_DoesNotBufferBody() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicReference<String> serverTimingBeforeWrite = new AtomicReference<>();
+    AtomicInteger bytesWrittenThrough = new AtomicInteger();
+
+    new ServerTimingFilter(true, Duration.ZERO)
+        .doFilter(
+            request("/api/v1/books/get-all-bestsellers"),
+            response,
+            (req, res) -> {
+              RequestTimings.record(Stage.SERIALIZE, 3_000_000);
+              serverTimingBeforeWrite.set(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+              res.getOutputStream().write(new byte[] {'[', ']'});
+              bytesWrittenThrough.set(response.getContentAsByteArray().length);
+            });
+
+    assertNull(serverTimingBeforeWrite.get());
+    assertEquals(2, bytesWrittenThrough.get());
+    assertTrue(
+        response.getHeader(ServerTimingFilter.SERVER_TIMING).startsWith("serialize;"),
+        response.getHeader(ServerTimingFilter.SERVER_TIMING));
+  }
+
+  /** Checks if no header is added to a body written after an async request returned */
+  @Test
+  void ServerTimingFilter_AsyncRequest_LeavesLaterBodyAlone() throws Exception {
+    MockHttpServletRequest request = request("/api/v1/books/get-favourites");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicReference<ServletResponse> asyncResponse = new AtomicReference<>();
+
+    new ServerTimingFilter(true, Duration.ZERO)
+        .doFilter(
+            request,
+            response,
+            (req, res) -> {
+              req.startAsync();
+              asyncResponse.set(res);
+            });
+    asyncResponse.get().getWriter().write("[]");
+
+    assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+    assertEquals("[]", response.getContentAsString());
+  }
+
+  private static MockHttpServletRequest request(String uri) {
+    return new MockHttpServletRequest("GET", uri);
+  }
+}
@@ -0,0 +1,128 @@
+package com.mihirsoni.radical.bookworm.models;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery.Sort;
+import com.mihirsoni.radical.bookworm.dto.InvalidBestsellerQueryException;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class BestsellerIndexTest {
+  private final BestsellerIndex index =
+      BestsellerIndex.build(
+          new BestsellerSnapshot(
+              books(
+                  book("1", "list-a", "Author B", 12, 2),
+                  book("2", "list-a", "Author A", 8, 5),
+                  book("3", "list-b", "Author A", 15, 4),
+                  book("4", "list-b", "Author C", 5, 1)),
+              Instant.now()),
+          Map.of());
+
+  /** Checks if pages follow the sort order and the cursor continues where the last page ended */
+  @Test
+  void BestsellerIndex_QueryByPriceWithCursor_ReturnsPagesInOrder() {
+    BestsellerPage first = index.query(query(null, null, null, Sort.PRICE, false, null, 3));
+    BestsellerPage second =
+        index.query(query(null, null, null, Sort.PRICE, false, first.nextCursor(), 3));
+
+    assertEquals(List.of("4", "2", "1"), isbns(first));
+    assertEquals(4, first.total());
+    assertEquals("1", first.nextCursor());
+    assertEquals(List.of("3"), isbns(second));
+    assertNull(second.nextCursor());
+  }
+
+  /** Checks if filters are combined and descending order is applied */
+  @Test
+  void BestsellerIndex_QueryWithFilters_ReturnsMatchingBooks() {
+    BestsellerPage page = index.query(query(null, "author a", 1, Sort.RATING, true, null, 10));
+    BestsellerPage list = index.query(query("list-b", null, null, null, false, null, 10));
+
+    assertEquals(List.of("2", "3"), isbns(page));
+    assertEquals(2, page.total());
+    assertEquals(List.of("3", "4"), isbns(list));
+  }
+
+  /** Checks if a stored rating change moves a book in the sorted view of the new index */
+  @Test
+  void BestsellerIndex_QueryAfterOverride_UsesStoredVersion() {
+    index.query(query(null, null, null, Sort.RATING, true, null, 10));
+    Book stored = book("4", "list-b", "Author C", 5, 5);
+
+    BestsellerPage page =
+        index.withOverride(stored).query(query(null, null, null, Sort.RATING, true, null, 1));
+
+    assertEquals(List.of("4"), isbns(page));
+    assertEquals(5, page.books().get(0).getRating());
+    assertEquals("4", page.nextCursor());
+  }
+
+  /**
+   * Checks if changed books are moved within the sorted views carried over to the new index, so
+   * every query answers as on an index built from scratch
+   */
+  @Test
+  void BestsellerIndex_QueriesAfterOverrides_MatchRebuiltIndex() {
+    Book repriced = book("2", "list-a", "Author A", 20, 5);
+    Book moved = book("3", "list-a", "Author A", 15, 1);
+    BestsellerIndex changed = index.withOverride(repriced).withOverride(moved).withoutOverride("2");
+    BestsellerIndex rebuilt =
+        BestsellerIndex.build(
+            new BestsellerSnapshot(new LinkedHashSet<>(changed.books()), Instant.now()), Map.of());
+
+    for (String list : new String[] {null, "list-a", "list-b"}) {
+      for (Sort sort : Sort.values()) {
+        for (boolean descending : new boolean[] {false, true}) {
+          BestsellerQuery query = query(list, null, null, sort, descending, null, 10);
+          assertEquals(isbns(rebuilt.query(query)), isbns(changed.query(query)), list + " " + sort);
+        }
+      }
+    }
+    assertEquals(
+        List.of("1", "2", "3"),
+        isbns(changed.query(query("list-a", null, null, null, false, null, 10))));
+  }
+
+  /** Checks if an unknown cursor is rejected */
+  @Test
+  void BestsellerIndex_QueryWithUnknownCursor_Throws() {
+    assertThrows(
+        InvalidBestsellerQueryException.class,
+        () -> index.query(query(null, null, null, Sort.TITLE, false, "999", 10)));
+  }
+
+  private static BestsellerQuery query(
+      String list,
+      String author,
+      Integer minPrice,
+      Sort sort,
+      boolean descending,
+      String after,
+      int limit) {
+    return new BestsellerQuery(list, author, minPrice, null, null, sort, descending, after, limit);
+  }
+
+  private static Book book(String isbn, String list, String author, int price, int rating) {
+    Book book = createBook(rating, price, false, false);
+    book.setIsbn(isbn);
+    book.setAuthor(author);
+    book.setEncodedListName(list);
+    return book;
+  }
+
+  private static Set<Book> books(Book... books) {
+    return new LinkedHashSet<>(List.of(books));
+  }
+
+  private static List<String> isbns(BestsellerPage page) {
+    return page.books().stream().map(Book::getIsbn).toList();
+  }
+}
@@ -3,19 +3,31 @@ package com.mihirsoni.radical.bookworm.repository;
 import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.mihirsoni.radical.bookworm.config.SecondLevelCacheConfig;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
 import com.mihirsoni.radical.bookworm.models.Book;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
-@DataJpaTest
+@DataJpaTest(properties = "bookworm.cache.statistics-enabled=true")
+@Import(SecondLevelCacheConfig.class)
 @AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
 public class BookwormRepositoryTest {
 
   @Autowired BookwormRepository repository;
+  @Autowired EntityManager entityManager;
 
   @Test
   void BookwormRepository_FindByValidId_ReturnsBook() {
@@ -60,19 +72,35 @@ public class BookwormRepositoryTest {
   }
 
   @Test
-  void BookwormRepository_FindByFavourite_ReturnsListOfFavourites() {
+  void BookwormRepository_FindFavourites_ReturnsListOfFavourites() {
     Book book1 = createBook(3, 10, true, true);
     Book book2 = createBook(1, 24, true, true);
     book2.setIsbn("456");
 
     repository.save(book1);
     repository.save(book2);
-    List<Book> favourites = repository.findByFavourite();
+    List<FavouriteBook> favourites = repository.findFavourites("", Limit.unlimited());
 
     assertNotNull(favourites);
     assertEquals(2, favourites.size());
   }
 
+  /** Checks if favourites are paged in ISBN order after the cursor, skipping other books */
+  @Test
+  void BookwormRepository_FindFavouritesAfterCursor_ReturnsNextPage() {
+    for (int i = 5; i > 0; i--) {
+      Book book = createBook(3, 10, i != 3, false);
+      book.setIsbn("isbn-" + i);
+      repository.save(book);
+    }
+
+    List<FavouriteBook> favourites = repository.findFavourites("isbn-1", Limit.of(2));
+
+    assertEquals(
+        List.of("isbn-2", "isbn-4"), favourites.stream().map(FavouriteBook::isbn).toList());
+    assertTrue(favourites.get(0).favourite());
+  }
+
   @Test
   void BookwormRepository_UpdateBook_UpdatesBook() {
     Book book = createBook(3, 10, true, true);
@@ -94,4 +122,89 @@ public class BookwormRepositoryTest {
     assertEquals(1000, updatedBook.getPrice());
     assertFalse(updatedBook.isFavourite());
   }
+
+  /** Checks if new books are inserted in one JDBC batch without selecting them first */
+  @Test
+  void BookwormRepository_SaveAllNewBooks_InsertsInOneBatch() {
+    List<Book> books = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Book book = createBook(3, 10, true, false);
+      book.setIsbn("isbn-" + i);
+      books.add(book);
+    }
+    Statistics statistics = statistics();
+    statistics.clear();
+
+    repository.saveAll(books);
+    entityManager.flush();
+
+    assertEquals(20, statistics.getEntityInsertCount());
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertFalse(books.get(0).isNew());
+  }
+
+  /** Checks if a book read again in a new session is served from the second-level cache */
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void BookwormRepository_FindByIdInNewSession_HitsSecondLevelCache() {
+    Book book = createBook(3, 10, true, true);
+    repository.save(book);
+    Statistics statistics = statistics();
+    statistics.clear();
+
+    repository.findById(book.getIsbn());
+    repository.findById(book.getIsbn());
+
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertEquals(2, statistics.getSecondLevelCacheHitCount());
+    repository.deleteAll();
+  }
+
+  /** Checks if the favourite list is cached and invalidated by a change of a book */
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void BookwormRepository_FindByFavouriteAfterSave_InvalidatesQueryCache() {
+    repository.save(createBook(3, 10, true, true));
+    Statistics statistics = statistics();
+    statistics.clear();
+
+    repository.findFavourites("", Limit.unlimited());
+    repository.findFavourites("", Limit.unlimited());
+    assertEquals(1, statistics.getQueryCacheHitCount());
+
+    Book book = createBook(1, 24, true, true);
+    book.setIsbn("456");
+    repository.save(book);
+    List<FavouriteBook> favourites = repository.findFavourites("", Limit.unlimited());
+
+    assertEquals(2, favourites.size());
+    assertEquals(1, statistics.getQueryCacheHitCount());
+    assertEquals(2, statistics.getQueryCacheMissCount());
+    repository.deleteAll();
+  }
+
+  /** Checks if every book is deleted in one statement and evicted from the second-level cache */
+  @Test
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
+  void BookwormRepository_DeleteAllInBulk_DeletesWithoutLoading() {
+    Book book1 = createBook(3, 10, true, true);
+    Book book2 = createBook(1, 24, true, true);
+    book2.setIsbn("456");
+    repository.saveAll(List.of(book1, book2));
+    Statistics statistics = statistics();
+    statistics.clear();
+
+    int deletedBooks = repository.deleteAllInBulk();
+
+    assertEquals(2, deletedBooks);
+    assertEquals(0, statistics.getEntityLoadCount());
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertTrue(repository.findById(book1.getIsbn()).isEmpty());
+    assertEquals(0, statistics.getSecondLevelCacheHitCount());
+  }
+
+  private Statistics statistics() {
+    return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+  }
 }
@@ -0,0 +1,151 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class BestsellerListCacheTest {
+
+  /** Checks if every list is cached on its own and loaded once while fresh */
+  @Test
+  void BestsellerListCache_GetTwoLists_LoadsEachOnce() {
+    BestsellerListCache cache =
+        new BestsellerListCache(Duration.ofHours(1), Runnable::run, Runnable::run);
+    Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    Function<String, Set<Book>> loader = listName -> loadList(listName, loads);
+
+    cache.get("list-a", loader);
+    cache.get("list-b", loader);
+    Set<Book> books = cache.get("list-a", loader).books();
+
+    assertEquals("list-a", books.iterator().next().getEncodedListName());
+    assertEquals(1, loads.get("list-a").get());
+    assertEquals(1, loads.get("list-b").get());
+  }
+
+  /**
+   * Checks if lists are fetched concurrently and combined in list order
+   *
+   * @throws InterruptedException if interrupted while waiting for the fetch executor
+   */
+  @Test
+  void BestsellerListCache_FetchAll_FetchesListsConcurrently() throws InterruptedException {
+    ExecutorService fetchExecutor = Executors.newFixedThreadPool(3);
+    BestsellerListCache cache =
+        new BestsellerListCache(Duration.ofHours(1), Runnable::run, fetchExecutor);
+    CountDownLatch allStarted = new CountDownLatch(3);
+    Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    Set<Book> books =
+        cache.fetchAll(
+            List.of("list-a", "list-b", "list-c"),
+            listName -> {
+              allStarted.countDown();
+              try {
+                // only returns if all three lists are being fetched at once
+                assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+              } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+              return loadList(listName, loads);
+            });
+    fetchExecutor.shutdown();
+    assertTrue(fetchExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals(
+        List.of("list-a", "list-b", "list-c"),
+        books.stream().map(Book::getEncodedListName).toList());
+  }
+
+  /** Checks if a failing list keeps its stale books */
+  @Test
+  void BestsellerListCache_FetchAllWithFailingLists_KeepsStaleBooks() {
+    BestsellerListCache cache = new BestsellerListCache(Duration.ZERO, task -> {}, Runnable::run);
+    Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    cache.get("list-a", listName -> loadList(listName, loads));
+    cache.get("list-b", listName -> loadList(listName, loads));
+
+    Set<Book> books =
+        cache.fetchAll(
+            List.of("list-a", "list-b"),
+            listName -> {
+              if (listName.equals("list-b")) {
+                throw new NytApiUnavailableException("Circuit open");
+              }
+              return loadList(listName, loads);
+            });
+
+    assertEquals(2, books.size());
+    assertEquals(2, loads.get("list-a").get());
+    assertEquals(1, loads.get("list-b").get());
+  }
+
+  /**
+   * Checks if more lists than the per-minute quota fail the load instead of leaving lists out,
+   * and if the next load only fetches the lists that are still missing
+   */
+  @Test
+  void BestsellerListCache_FetchAllBeyondMinuteQuota_FailsUntilEveryListIsLoaded() {
+    BestsellerListCache cache =
+        new BestsellerListCache(Duration.ofHours(1), Runnable::run, Runnable::run);
+    List<String> listNames =
+        List.of("list-a", "list-b", "list-c", "list-d", "list-e", "list-f", "list-g");
+    AtomicInteger minuteQuota = new AtomicInteger(5);
+    Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    Function<String, Set<Book>> loader =
+        listName -> {
+          if (minuteQuota.getAndDecrement() <= 0) {
+            throw new NytApiUnavailableException("Per-minute quota of New York Times API spent");
+          }
+          return loadList(listName, loads);
+        };
+
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> cache.fetchAll(listNames, loader));
+    assertTrue(e.getMessage().startsWith("Lists [list-f, list-g] of"), e.getMessage());
+
+    minuteQuota.set(5);
+    Set<Book> books = cache.fetchAll(listNames, loader);
+
+    assertEquals(listNames, books.stream().map(Book::getEncodedListName).toList());
+    assertEquals(7, loads.size());
+    assertTrue(loads.values().stream().allMatch(count -> count.get() == 1));
+  }
+
+  /** Checks if loading fails when none of the lists could be loaded */
+  @Test
+  void BestsellerListCache_FetchAllWithoutAnyList_Throws() {
+    BestsellerListCache cache =
+        new BestsellerListCache(Duration.ofHours(1), Runnable::run, Runnable::run);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            cache.fetchAll(
+                List.of("list-a"),
+                listName -> {
+                  throw new NytApiUnavailableException("Circuit open");
+                }));
+  }
+
+  private static Set<Book> loadList(String listName, Map<String, AtomicInteger> loads) {
+    loads.computeIfAbsent(listName, name -> new AtomicInteger()).incrementAndGet();
+    Book book = createBook(3, 10, false, false);
+    book.setIsbn(listName + "-1");
+    book.setEncodedListName(listName);
+    return Set.of(book);
+  }
+}
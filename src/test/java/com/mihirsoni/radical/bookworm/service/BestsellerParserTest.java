@@ -0,0 +1,112 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class BestsellerParserTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final BestsellerParser parser = new BestsellerParser(objectMapper);
+
+  /**
+   * Checks if the streamed books match the books of the full JSON tree
+   *
+   * @throws IOException if file not found or response is "un-parse-able"
+   */
+  @Test
+  void BestsellerParser_ParseFullOverview_ReturnsEveryBookOfTheResponse() throws IOException {
+    Set<Book> books;
+    try (InputStream inputStream =
+        Files.newInputStream(Paths.get("src/test/resources/external_response.json"))) {
+      books = parser.parseFullOverview(inputStream);
+    }
+
+    JsonNode listsNode =
+        objectMapper
+            .readTree(Paths.get("src/test/resources/external_response.json").toFile())
+            .path("results")
+            .path("lists");
+    Set<String> isbns = new LinkedHashSet<>();
+    listsNode.forEach(
+        listNode ->
+            listNode
+                .path("books")
+                .forEach(bookNode -> isbns.add(bookNode.path("primary_isbn13").asText())));
+
+    assertEquals(isbns.stream().toList(), books.stream().map(Book::getIsbn).toList());
+
+    JsonNode listNode = listsNode.get(0);
+    JsonNode bookNode = listNode.path("books").get(0);
+    Book book = books.iterator().next();
+    assertEquals(bookNode.path("title").asText(), book.getTitle());
+    assertEquals(bookNode.path("author").asText(), book.getAuthor());
+    assertEquals(bookNode.path("book_image").asText(), book.getImageUrl());
+    assertEquals(listNode.path("list_name").asText(), book.getListName());
+    assertEquals(listNode.path("list_name_encoded").asText(), book.getEncodedListName());
+    assertTrue(book.getRating() >= 1 && book.getRating() <= 5);
+    assertFalse(book.isFavourite());
+  }
+
+  /**
+   * Checks if list names are applied even when they come after the books of the list
+   *
+   * @throws IOException if response is "un-parse-able"
+   */
+  @Test
+  void BestsellerParser_ListNameAfterBooks_SetsListName() throws IOException {
+    String json =
+        """
+        {"results": {"lists": [{"books": [{"primary_isbn13": "123", "price": "7",
+        "buy_links": [{"name": "Amazon"}]}], "list_name": "List A",
+        "list_name_encoded": "list-a"}]}}
+        """;
+
+    Set<Book> books =
+        parser.parseFullOverview(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    Book book = books.iterator().next();
+    assertEquals("123", book.getIsbn());
+    assertEquals(7, book.getPrice());
+    assertEquals("List A", book.getListName());
+    assertEquals("list-a", book.getEncodedListName());
+  }
+
+  /**
+   * Checks if a current list response is parsed into the books of the list
+   *
+   * @throws IOException if file not found or response is "un-parse-able"
+   */
+  @Test
+  void BestsellerParser_ParseCurrentList_ReturnsBooksOfTheList() throws IOException {
+    Set<Book> books;
+    try (InputStream inputStream =
+        Files.newInputStream(Paths.get("src/test/resources/list_response.json"))) {
+      books = parser.parseCurrentList(inputStream);
+    }
+
+    JsonNode resultsNode =
+        objectMapper.readTree(Paths.get("src/test/resources/list_response.json").toFile());
+    resultsNode = resultsNode.path("results");
+    Set<String> isbns = new LinkedHashSet<>();
+    resultsNode
+        .path("books")
+        .forEach(bookNode -> isbns.add(bookNode.path("primary_isbn13").asText()));
+
+    assertEquals(isbns.stream().toList(), books.stream().map(Book::getIsbn).toList());
+    for (Book book : books) {
+      assertEquals(resultsNode.path("list_name").asText(), book.getListName());
+      assertEquals(resultsNode.path("list_name_encoded").asText(), book.getEncodedListName());
+    }
+  }
+}
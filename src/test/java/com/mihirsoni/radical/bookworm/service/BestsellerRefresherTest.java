@@ -0,0 +1,25 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+public class BestsellerRefresherTest {
+  private final ApplicationContextRunner contextRunner =
+      new ApplicationContextRunner()
+          .withBean(BookwormService.class, () -> mock(BookwormService.class))
+          .withUserConfiguration(BestsellerRefresher.class);
+
+  /** Checks if the scheduled refresher is only created when refreshes are enabled */
+  @Test
+  void BestsellerRefresher_RefreshEnabled_IsCreated() {
+    contextRunner
+        .withPropertyValues("bookworm.nyt.refresh-enabled=true")
+        .run(context -> assertThat(context).hasSingleBean(BestsellerRefresher.class));
+    contextRunner
+        .withPropertyValues("bookworm.nyt.refresh-enabled=false")
+        .run(context -> assertThat(context).doesNotHaveBean(BestsellerRefresher.class));
+  }
+}
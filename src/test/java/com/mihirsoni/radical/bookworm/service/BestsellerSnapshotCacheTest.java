@@ -0,0 +1,70 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+public class BestsellerSnapshotCacheTest {
+
+  /** Checks if a fresh snapshot is served without calling the loader again */
+  @Test
+  void BestsellerSnapshotCache_FreshSnapshot_LoadsOnce() {
+    BestsellerSnapshotCache cache = new BestsellerSnapshotCache(Duration.ofHours(1), Runnable::run);
+    AtomicInteger loads = new AtomicInteger();
+
+    cache.get(() -> loadBook(loads));
+    Set<Book> books = cache.get(() -> loadBook(loads)).books();
+
+    assertEquals(1, books.size());
+    assertEquals(1, loads.get());
+  }
+
+  /** Checks if a stale snapshot is served while exactly one refresh is scheduled */
+  @Test
+  void BestsellerSnapshotCache_StaleSnapshot_ServesStaleAndRefreshesOnce() {
+    List<Runnable> scheduled = new ArrayList<>();
+    BestsellerSnapshotCache cache = new BestsellerSnapshotCache(Duration.ZERO, scheduled::add);
+    AtomicInteger loads = new AtomicInteger();
+
+    Set<Book> first = cache.get(() -> loadBook(loads)).books();
+    Set<Book> second = cache.get(() -> loadBook(loads)).books();
+    cache.get(() -> loadBook(loads));
+
+    assertEquals(first, second);
+    assertEquals(1, loads.get());
+    assertEquals(1, scheduled.size());
+
+    scheduled.get(0).run();
+
+    assertEquals(2, loads.get());
+  }
+
+  /** Checks if the stale snapshot survives a failed background refresh */
+  @Test
+  void BestsellerSnapshotCache_FailedRefresh_KeepsStaleSnapshot() {
+    BestsellerSnapshotCache cache = new BestsellerSnapshotCache(Duration.ZERO, Runnable::run);
+    Set<Book> loaded = cache.get(() -> Set.of(createBook(3, 10, false, false))).books();
+
+    Supplier<Set<Book>> failingLoader =
+        () -> {
+          throw new IllegalStateException("429 Too Many Requests");
+        };
+    cache.get(failingLoader);
+    Set<Book> books = cache.get(failingLoader).books();
+
+    assertEquals(loaded, books);
+  }
+
+  private Set<Book> loadBook(AtomicInteger loads) {
+    loads.incrementAndGet();
+    return Set.of(createBook(3, 10, false, false));
+  }
+}
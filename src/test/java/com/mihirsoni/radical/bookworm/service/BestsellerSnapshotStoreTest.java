@@ -0,0 +1,76 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.mihirsoni.radical.bookworm.models.BestsellerSnapshot;
+import com.mihirsoni.radical.bookworm.models.Book;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BestsellerSnapshotStoreTest {
+  @TempDir Path directory;
+
+  /** Checks if a saved snapshot is loaded back with every field a bestseller is served with */
+  @Test
+  void BestsellerSnapshotStore_SaveAndLoad_ReturnsSameSnapshot() {
+    BestsellerSnapshotStore store = new BestsellerSnapshotStore(directory.resolve("snapshot.bin"));
+    Book book = createBook(3, 10, false, false);
+    Instant fetchedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    store.save(new BestsellerSnapshot(Set.of(book), fetchedAt));
+    BestsellerSnapshot snapshot = store.load().orElseThrow(AssertionError::new);
+
+    assertEquals(fetchedAt, snapshot.fetchedAt());
+    Book loadedBook = snapshot.books().iterator().next();
+    assertEquals(book.getIsbn(), loadedBook.getIsbn());
+    assertEquals(book.getTitle(), loadedBook.getTitle());
+    assertEquals(book.getAuthor(), loadedBook.getAuthor());
+    assertEquals(book.getImageUrl(), loadedBook.getImageUrl());
+    assertEquals(book.getListName(), loadedBook.getListName());
+    assertEquals(book.getEncodedListName(), loadedBook.getEncodedListName());
+    assertEquals(book.getRating(), loadedBook.getRating());
+    assertEquals(book.getPrice(), loadedBook.getPrice());
+  }
+
+  /**
+   * Checks if an unreadable file is ignored instead of failing startup
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Test
+  void BestsellerSnapshotStore_CorruptFile_ReturnsEmpty() throws IOException {
+    Path file = Files.writeString(directory.resolve("snapshot.bin"), "not a snapshot");
+
+    assertTrue(new BestsellerSnapshotStore(file).load().isEmpty());
+  }
+
+  /** Checks if a restarted cache serves the persisted snapshot without calling the loader */
+  @Test
+  void BestsellerSnapshotCache_PersistedSnapshot_ServedAfterRestart() {
+    BestsellerSnapshotStore store = new BestsellerSnapshotStore(directory.resolve("snapshot.bin"));
+    new BestsellerSnapshotCache(Duration.ofHours(1), Runnable::run, store)
+        .get(() -> Set.of(createBook(3, 10, false, false)));
+    AtomicInteger loads = new AtomicInteger();
+
+    Set<Book> books =
+        new BestsellerSnapshotCache(Duration.ofHours(1), Runnable::run, store)
+            .get(
+                () -> {
+                  loads.incrementAndGet();
+                  return Set.of();
+                })
+            .books();
+
+    assertEquals(1, books.size());
+    assertEquals(0, loads.get());
+  }
+}
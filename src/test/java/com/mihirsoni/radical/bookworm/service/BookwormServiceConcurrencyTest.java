@@ -0,0 +1,176 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/** Stress test of concurrent changes of the same books against the real database */
+@DataJpaTest
+@AutoConfigureTestDatabase(connection = EmbeddedDatabaseConnection.H2)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BookwormServiceConcurrencyTest {
+  private static final int BOOKS = 8;
+  private static final int ROUNDS = 25;
+  private static final int THREADS = 16;
+
+  @Autowired BookwormRepository repository;
+  @Autowired PlatformTransactionManager transactionManager;
+
+  private BookwormService service;
+
+  @BeforeEach
+  void setUp() {
+    BestsellerParser parser = new BestsellerParser(new ObjectMapper());
+    BookwormMetrics metrics = new BookwormMetrics(new SimpleMeterRegistry());
+    service =
+        new BookwormService(
+            repository,
+            null,
+            null,
+            parser,
+            new BestsellerSnapshotCache(Duration.ofHours(1), Runnable::run),
+            new BestsellerListCache(Duration.ofHours(1), Runnable::run, Runnable::run),
+            new NytCircuitBreaker(
+                Duration.ofSeconds(30), Duration.ofMinutes(10), 5, 500, Clock.systemUTC()),
+            new HardcodedBestsellers(parser),
+            new FavouriteWriteBehind(
+                false, 100, repository, new TransactionTemplate(transactionManager), Runnable::run),
+            new TransactionTemplate(transactionManager),
+            new PurgeJobs(Runnable::run),
+            new BestsellerResponseCache(new ObjectMapper(), metrics),
+            metrics);
+  }
+
+  @AfterEach
+  void tearDown() {
+    repository.deleteAll();
+  }
+
+  /**
+   * Checks if no favourite or rating/price change is lost when the same books are changed
+   * concurrently: every book must end up both favourite and rating/price changed
+   *
+   * @throws Exception if a change fails
+   */
+  @Test
+  void BookwormService_ConcurrentChangesOfSameBooks_LosesNoUpdate() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int round = 0; round < ROUNDS; round++) {
+        for (int i = 0; i < BOOKS; i++) {
+          String isbn = "isbn-" + i;
+          int rating = 1 + round % 5;
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    service.addToFavourite(book(isbn, rating));
+                    return null;
+                  }));
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    service.updateRatingAndPrice(book(isbn, rating));
+                    return null;
+                  }));
+        }
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<Book> books = repository.findAll();
+    assertEquals(BOOKS, books.size());
+    for (Book book : books) {
+      assertTrue(book.isFavourite(), book.getIsbn() + " lost its favourite mark");
+      assertTrue(book.isRatingPriceChanged(), book.getIsbn() + " lost its rating/price change");
+    }
+  }
+
+  /**
+   * Checks if removing favourites concurrently with rating/price changes never deletes a book
+   * whose rating/price was changed
+   *
+   * @throws Exception if a change fails
+   */
+  @Test
+  void BookwormService_ConcurrentRemoveAndUpdate_KeepsChangedBooks() throws Exception {
+    for (int i = 0; i < BOOKS; i++) {
+      service.addToFavourite(book("isbn-" + i, 3));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < BOOKS; i++) {
+        String isbn = "isbn-" + i;
+        for (int round = 0; round < ROUNDS; round++) {
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    service.removeFromFavourite(book(isbn, 3));
+                    return null;
+                  }));
+        }
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  service.updateRatingAndPrice(book(isbn, 5));
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    List<Book> books = repository.findAll();
+    assertEquals(BOOKS, books.size());
+    for (Book book : books) {
+      assertTrue(book.isRatingPriceChanged());
+      assertEquals(5, book.getRating());
+    }
+  }
+
+  private static Book book(String isbn, int rating) {
+    Book book = createBook(rating, 10, false, false);
+    book.setIsbn(isbn);
+    return book;
+  }
+}
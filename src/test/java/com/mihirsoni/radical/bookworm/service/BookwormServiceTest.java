@@ -2,35 +2,102 @@ package com.mihirsoni.radical.bookworm.service;
 
 import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mihirsoni.radical.bookworm.config.BookwormConfiguration;
+import com.mihirsoni.radical.bookworm.dto.BestsellerPage;
+import com.mihirsoni.radical.bookworm.dto.BestsellerQuery;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome;
+import com.mihirsoni.radical.bookworm.dto.BulkOutcome.Status;
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.dto.FavouritePage;
+import com.mihirsoni.radical.bookworm.dto.PurgeJob;
 import com.mihirsoni.radical.bookworm.models.Book;
 import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import com.mihirsoni.radical.bookworm.service.BestsellerResponseCache.EncodedBestsellers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 @ExtendWith(MockitoExtension.class)
 public class BookwormServiceTest {
+  private static final String EXTERNAL_RESPONSE = "src/test/resources/external_response.json";
 
   @Mock private BookwormRepository repository;
   @Mock private RestTemplate restTemplate;
   @Mock private BookwormConfiguration configuration;
-  @Spy private ObjectMapper objectMapper = new ObjectMapper();
+  @Spy private BestsellerParser parser = new BestsellerParser(new ObjectMapper());
+  @Spy private HardcodedBestsellers hardcodedBestsellers = new HardcodedBestsellers(parser);
+
+  @Spy
+  private BestsellerSnapshotCache snapshotCache =
+      new BestsellerSnapshotCache(Duration.ofHours(1), Runnable::run);
+
+  @Spy
+  private BestsellerListCache listCache =
+      new BestsellerListCache(Duration.ofHours(1), Runnable::run, Runnable::run);
+
+  @Spy
+  private FavouriteWriteBehind writeBehind =
+      new FavouriteWriteBehind(
+          false, 100, null, TransactionOperations.withoutTransaction(), Runnable::run);
+
+  @Spy
+  private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+  @Spy private PurgeJobs purgeJobs = new PurgeJobs(Runnable::run);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  @Spy private BookwormMetrics metrics = new BookwormMetrics(meterRegistry);
+
+  @Spy
+  private BestsellerResponseCache responseCache =
+      new BestsellerResponseCache(new ObjectMapper(), metrics);
+
+  @Spy
+  private NytCircuitBreaker circuitBreaker =
+      new NytCircuitBreaker(
+          Duration.ofSeconds(30), Duration.ofMinutes(10), 5, 500, Clock.systemUTC());
 
   @InjectMocks private BookwormService service;
 
@@ -41,17 +108,462 @@ public class BookwormServiceTest {
    */
   @Test
   void BookwormService_FetchBestsellers_ReturnsSetOfBestsellers() throws IOException {
-    when(restTemplate.getForObject(
-            "https://api.nytimes.com/svc/books/v3/lists/full-overview.json?api-key=DUMMY_API_KEY",
-            String.class))
-        .thenReturn(
-            new String(Files.readAllBytes(Paths.get("src/test/resources/external_response.json"))));
-    when(repository.existsById(anyString())).thenReturn(false);
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
     when(configuration.getApiKey()).thenReturn("DUMMY_API_KEY");
 
     Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
     assertNotNull(books);
     assertFalse(books.isEmpty());
+    Mockito.verify(restTemplate)
+        .execute(
+            eq(
+                URI.create(
+                    "https://api.nytimes.com/svc/books/v3/lists/full-overview.json?api-key=DUMMY_API_KEY")),
+            eq(HttpMethod.GET),
+            any(),
+            any());
+  }
+
+  /**
+   * Checks if books stored in the database replace their New York Times version, using one query
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellers_ReturnsStoredVersionOfBooks() throws IOException {
+    mockNYTResponse();
+    Book storedBook = createBook(1, 24, true, true);
+    storedBook.setIsbn("9780316403085");
+    when(repository.findAllById(anyList())).thenReturn(List.of(storedBook));
+
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    Book mergedBook =
+        books.stream().filter(storedBook::equals).findFirst().orElseThrow(AssertionError::new);
+    assertSame(storedBook, mergedBook);
+    Mockito.verify(repository, times(1)).findAllById(anyList());
+    Mockito.verify(repository, never()).findById(anyString());
+  }
+
+  /**
+   * Checks if bestsellers are served from the snapshot cache without calling New York Times API
+   * again
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellersTwice_CallsNYTAPIOnce() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+
+    Set<Book> first = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    Set<Book> second = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals(first, second);
+    Mockito.verify(restTemplate, times(1))
+        .execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+  }
+
+  /** Checks if the hardcoded response is returned and not cached when New York Times API fails */
+  @Test
+  void BookwormService_FetchBestsellersFails_ReturnsHardcodedResponse() {
+    when(configuration.getNytBaseUrl()).thenReturn("https://api.nytimes.com");
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenThrow(new RestClientException("429 Too Many Requests"));
+
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals(1, books.size());
+    assertEquals("API rate limit reached", books.iterator().next().getTitle());
+    Mockito.verify(restTemplate, times(2))
+        .execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+  }
+
+  /**
+   * Checks if the NYT call, parsing, merge and index cache lookups of a fetch are measured
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellersTwice_RecordsPipelineMetrics() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals(
+        1,
+        meterRegistry
+            .get(BookwormMetrics.NYT_CALL)
+            .tags("endpoint", "full-overview", "outcome", "success")
+            .timer()
+            .count());
+    assertEquals(1, meterRegistry.get(BookwormMetrics.NYT_PARSE).timer().count());
+    assertEquals(1, meterRegistry.get(BookwormMetrics.INDEX_MERGE).timer().count());
+    assertEquals(
+        1,
+        meterRegistry.get(BookwormMetrics.CACHE_REQUESTS).tag("result", "hit").counter().count());
+    assertEquals(
+        1,
+        meterRegistry.get(BookwormMetrics.CACHE_REQUESTS).tag("result", "miss").counter().count());
+  }
+
+  /** Checks if failed NYT calls and the hardcoded responses served instead are counted */
+  @Test
+  void BookwormService_FetchBestsellersFails_CountsFallbacks() {
+    when(configuration.getNytBaseUrl()).thenReturn("https://api.nytimes.com");
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenThrow(new RestClientException("429 Too Many Requests"));
+
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals(
+        2, meterRegistry.get(BookwormMetrics.NYT_CALL).tag("outcome", "failure").timer().count());
+    assertEquals(
+        2,
+        meterRegistry
+            .get(BookwormMetrics.FALLBACKS)
+            .tag("fallback", "hardcoded")
+            .counter()
+            .count());
+  }
+
+  /**
+   * Checks if favourite changes are applied to the bestseller index without reloading stored books
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_AddFavouriteAfterFetch_UpdatesBestsellers() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    Book book = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().iterator().next();
+    Book favourite = createBook(book.getRating(), book.getPrice(), false, false);
+    favourite.setIsbn(book.getIsbn());
+    when(repository.findById(book.getIsbn())).thenReturn(Optional.empty());
+
+    service.addToFavourite(favourite);
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertTrue(books.stream().filter(favourite::equals).findFirst().orElseThrow().isFavourite());
+    Mockito.verify(repository, times(1)).findAllById(anyList());
+  }
+
+  /**
+   * Checks if the entity tags of bestsellers and favourites change with a favourite change and
+   * stay the same otherwise
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_AddFavouriteAfterFetch_ChangesETags() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    Book book = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().iterator().next();
+    Book favourite = createBook(book.getRating(), book.getPrice(), false, false);
+    favourite.setIsbn(book.getIsbn());
+    when(repository.findById(book.getIsbn())).thenReturn(Optional.empty());
+    String bestsellersETag = service.fetchEncodedBestsellers().eTag();
+    String favouritesETag = service.getFavouritesETag();
+
+    assertEquals(bestsellersETag, service.fetchEncodedBestsellers().eTag());
+    service.addToFavourite(favourite);
+
+    assertNotEquals(bestsellersETag, service.fetchEncodedBestsellers().eTag());
+    assertNotEquals(favouritesETag, service.getFavouritesETag());
+  }
+
+  /**
+   * Checks if bestsellers are encoded once per index version and encoded again after a change
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchEncodedBestsellers_EncodesOncePerVersion() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    EncodedBestsellers first = service.fetchEncodedBestsellers();
+    Book book = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().iterator().next();
+    when(repository.findById(book.getIsbn())).thenReturn(Optional.empty());
+
+    assertSame(first, service.fetchEncodedBestsellers());
+    service.addToFavourite(book);
+    EncodedBestsellers changed = service.fetchEncodedBestsellers();
+
+    assertNotSame(first, changed);
+    assertNotEquals(first.eTag(), changed.eTag());
+    Book[] books = new ObjectMapper().readValue(changed.json(), Book[].class);
+    assertEquals(service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().size(), books.length);
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(changed.gzip()))) {
+      assertArrayEquals(changed.json(), in.readAllBytes());
+    }
+  }
+
+  /**
+   * Checks if the scheduled refresher builds the bestseller index before any request
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_RefreshBestsellers_BuildsIndexOffRequestPath() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+
+    service.refreshBestsellers();
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    Mockito.verify(restTemplate, times(1))
+        .execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+    Mockito.verify(repository, times(1)).findAllById(anyList());
+  }
+
+  /** Checks if no call is made to New York Times API while the circuit is open */
+  @Test
+  void BookwormService_FetchBestsellersWhileRateLimited_SkipsNYTAPI() {
+    when(configuration.getNytBaseUrl()).thenReturn("https://api.nytimes.com");
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenThrow(
+            HttpClientErrorException.create(
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", new HttpHeaders(), null, null));
+
+    service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals("API rate limit reached", books.iterator().next().getTitle());
+    Mockito.verify(restTemplate, times(1))
+        .execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+  }
+
+  /**
+   * Checks if a page of bestsellers is answered from the bestseller index
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_QueryBestsellers_ReturnsSortedPage() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    BestsellerQuery query =
+        new BestsellerQuery(
+            null, null, null, null, null, BestsellerQuery.Sort.TITLE, false, null, 5);
+
+    BestsellerPage page = service.queryBestsellers(query);
+
+    List<String> titles = page.books().stream().map(Book::getTitle).toList();
+    assertEquals(5, titles.size());
+    assertEquals(titles.stream().sorted(String.CASE_INSENSITIVE_ORDER).toList(), titles);
+    assertEquals(service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().size(), page.total());
+  }
+
+  /**
+   * Checks if a list is fetched from the current list endpoint of New York Times API
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellersOfList_ReturnsBooksOfTheList() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    when(configuration.getApiKey()).thenReturn("DUMMY_API_KEY");
+    service.refreshBestsellers();
+    mockNYTResponse("src/test/resources/list_response.json");
+
+    List<Book> books = service.fetchBestsellersOfList("combined-print-and-e-book-fiction");
+
+    assertEquals(15, books.size());
+    assertTrue(
+        books.stream()
+            .map(Book::getEncodedListName)
+            .allMatch("combined-print-and-e-book-fiction"::equals));
+    Mockito.verify(restTemplate)
+        .execute(
+            eq(
+                URI.create(
+                    "https://api.nytimes.com/svc/books/v3/lists/current/combined-print-and-e-book-fiction.json?api-key=DUMMY_API_KEY")),
+            eq(HttpMethod.GET),
+            any(),
+            any());
+  }
+
+  /**
+   * Checks if an unknown list is rejected without calling New York Times API for it
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellersOfUnknownList_ThrowsNotFound() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+
+    assertThrows(
+        BestsellerListNotFoundException.class,
+        () -> service.fetchBestsellersOfList("no-such-list"));
+    Mockito.verify(restTemplate, times(1))
+        .execute(any(URI.class), eq(HttpMethod.GET), any(), any());
+  }
+
+  /**
+   * Checks if the list is served from the bestseller index when the list cannot be fetched
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_FetchBestsellersOfListFails_ReturnsListFromIndex() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    service.refreshBestsellers();
+    when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenThrow(new RestClientException("429 Too Many Requests"));
+
+    List<Book> books = service.fetchBestsellersOfList("combined-print-and-e-book-fiction");
+
+    assertFalse(books.isEmpty());
+    assertTrue(
+        books.stream()
+            .map(Book::getEncodedListName)
+            .allMatch("combined-print-and-e-book-fiction"::equals));
+  }
+
+  /**
+   * Checks if the snapshot is built from the configured lists instead of the full-overview
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_RefreshFromLists_CallsCurrentListEndpoint() throws IOException {
+    mockNYTResponse("src/test/resources/list_response.json");
+    when(configuration.getRefreshLists()).thenReturn(List.of("combined-print-and-e-book-fiction"));
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+
+    assertEquals(15, books.size());
+    Mockito.verify(listCache).fetchAll(eq(List.of("combined-print-and-e-book-fiction")), any());
+  }
+
+  /**
+   * Checks if lists are streamed as they are fetched before any bestsellers are loaded
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_StreamBestsellersBeforeLoad_StreamsFetchedLists() throws IOException {
+    mockNYTResponse("src/test/resources/list_response.json");
+    when(configuration.getRefreshLists()).thenReturn(List.of("combined-print-and-e-book-fiction"));
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    List<List<Book>> lists = new ArrayList<>();
+
+    service.streamBestsellers(lists::add);
+
+    assertEquals(1, lists.size());
+    assertEquals(15, lists.get(0).size());
+    Mockito.verify(listCache)
+        .fetchEach(eq(List.of("combined-print-and-e-book-fiction")), any(), any());
+    Mockito.verify(snapshotCache, never()).get(any());
+  }
+
+  /**
+   * Checks if lists of the full-overview are streamed as they are parsed, before the response body
+   * has been read to the end, and the snapshot is loaded on the way
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_StreamBestsellersBeforeLoad_StreamsListsWhileParsing() throws IOException {
+    CountDownLatch listStreamed = new CountDownLatch(1);
+    AtomicBoolean bodyRead = new AtomicBoolean();
+    InputStream body =
+        new FilterInputStream(Files.newInputStream(Paths.get(EXTERNAL_RESPONSE))) {
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read < 0) {
+              await(listStreamed);
+              bodyRead.set(true);
+            }
+            return read;
+          }
+        };
+    when(configuration.getNytBaseUrl()).thenReturn("https://api.nytimes.com");
+    when(restTemplate.<Set<Book>>execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              ResponseExtractor<Set<Book>> extractor = invocation.getArgument(3);
+              return extractor.extractData(new MockClientHttpResponse(body, HttpStatus.OK));
+            });
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    loadSnapshotAsynchronously();
+    List<Boolean> bodyReadPerList = new ArrayList<>();
+    List<List<Book>> lists = new ArrayList<>();
+
+    service.streamBestsellers(
+        list -> {
+          bodyReadPerList.add(bodyRead.get());
+          lists.add(list);
+          listStreamed.countDown();
+        });
+
+    assertTrue(lists.size() > 1);
+    assertFalse(bodyReadPerList.get(0));
+    assertEquals(
+        service.fetchAllBestsellersAcrossCategoriesFromNYTAPI().size(),
+        lists.stream().mapToInt(List::size).sum());
+    Mockito.verify(restTemplate, times(1)).execute(any(URI.class), any(), any(), any());
+  }
+
+  /**
+   * Checks if a client that stops reading while the full-overview is parsed does not hold up the
+   * load, and still gets every bestseller once, partly from the bestseller index
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_StreamBestsellersToStalledClient_LoadsWithoutWaiting() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    CountDownLatch loaded = loadSnapshotAsynchronously();
+    AtomicBoolean loadedWhileStalled = new AtomicBoolean();
+    List<List<Book>> lists = new ArrayList<>();
+
+    service.streamBestsellers(
+        list -> {
+          if (lists.isEmpty()) {
+            loadedWhileStalled.set(await(loaded));
+          }
+          lists.add(list);
+        });
+
+    assertTrue(loadedWhileStalled.get());
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    assertEquals(books.size(), lists.stream().mapToInt(List::size).sum());
+    assertEquals(
+        books.size(), lists.stream().flatMap(List::stream).map(Book::getIsbn).distinct().count());
+    Mockito.verify(restTemplate, times(1)).execute(any(URI.class), any(), any(), any());
+  }
+
+  /**
+   * Checks if every bestseller is streamed once, list by list, from the bestseller index
+   *
+   * @throws IOException if file not found
+   */
+  @Test
+  void BookwormService_StreamBestsellersAfterLoad_StreamsIndexedLists() throws IOException {
+    mockNYTResponse();
+    when(repository.findAllById(anyList())).thenReturn(List.of());
+    Set<Book> books = service.fetchAllBestsellersAcrossCategoriesFromNYTAPI();
+    List<List<Book>> lists = new ArrayList<>();
+
+    service.streamBestsellers(lists::add);
+
+    assertTrue(lists.size() > 1);
+    assertEquals(books.size(), lists.stream().mapToInt(List::size).sum());
+    for (List<Book> list : lists) {
+      assertEquals(1, list.stream().map(Book::getEncodedListName).distinct().count());
+    }
   }
 
   /** Checks if favourites are returned correctly if present */
@@ -60,35 +572,150 @@ public class BookwormServiceTest {
     Book book1 = createBook(3, 10, true, true);
     Book book2 = createBook(1, 24, true, true);
     book2.setIsbn("456");
-    List<Book> list = List.of(book1, book2);
+    List<FavouriteBook> list = List.of(FavouriteBook.of(book1), FavouriteBook.of(book2));
 
-    when(repository.findByFavourite()).thenReturn(list);
+    when(repository.findFavourites("", Limit.of(21))).thenReturn(list);
 
-    List<Book> favourites = service.getFavouriteList();
+    FavouritePage favourites = service.getFavouritePage(null, 20);
 
     assertNotNull(favourites);
-    assertEquals(2, favourites.size());
+    assertEquals(2, favourites.books().size());
+    assertNull(favourites.nextCursor());
   }
 
   /** Checks if empty list is returned when no favourites are present */
   @Test
   void BookwormService_FetchFavourites_ReturnsEmptyList1() {
-    when(repository.findByFavourite()).thenReturn(List.of());
+    when(repository.findFavourites("", Limit.of(101))).thenReturn(List.of());
 
-    List<Book> favourites = service.getFavouriteList();
+    FavouritePage favourites = service.getFavouritePage(null, 1000);
 
     assertNotNull(favourites);
-    assertTrue(favourites.isEmpty());
+    assertTrue(favourites.books().isEmpty());
+  }
+
+  /** Checks if a full page of favourites points to the next one, found with one extra row */
+  @Test
+  void BookwormService_FetchFavouritesPage_ReturnsNextCursor() {
+    List<FavouriteBook> stored = favourites(0, 3);
+    when(repository.findFavourites("", Limit.of(3))).thenReturn(stored);
+
+    FavouritePage page = service.getFavouritePage(null, 2);
+
+    assertEquals(stored.subList(0, 2), page.books());
+    assertEquals(stored.get(1).isbn(), page.nextCursor());
   }
 
-  /** Checks if deleteAll() is called when purgeDatabase() is called */
+  /** Checks if the whole favourite list is returned across pages when no limit is given */
+  @Test
+  void BookwormService_FetchAllFavourites_ReadsEveryPage() {
+    int limit = BookwormService.MAX_FAVOURITES_LIMIT;
+    List<FavouriteBook> stored = favourites(0, limit + 50);
+    when(repository.findFavourites("", Limit.of(limit + 1)))
+        .thenReturn(stored.subList(0, limit + 1));
+    when(repository.findFavourites(stored.get(limit - 1).isbn(), Limit.of(limit + 1)))
+        .thenReturn(stored.subList(limit, stored.size()));
+
+    List<FavouriteBook> favourites = service.getFavouriteList(null);
+
+    assertEquals(stored, favourites);
+  }
+
+  /** Checks if books are deleted in bulk, without loading them, when purgeDatabase() is called */
   @Test
   void BookwormService_PurgeDatabase_PurgesDatabase() {
-    doNothing().when(repository).deleteAll();
+    when(repository.deleteAllInBulk()).thenReturn(2);
 
     service.purgeDatabase();
 
-    Mockito.verify(repository, times(1)).deleteAll();
+    Mockito.verify(repository, times(1)).deleteAllInBulk();
+    Mockito.verify(repository, never()).deleteAll();
+    Mockito.verify(writeBehind, times(1)).clear();
+  }
+
+  /**
+   * Checks if a purge waits for a change that is being stored, so it cannot be stored after it
+   *
+   * @throws Exception if the change or the purge fails
+   */
+  @Test
+  void BookwormService_PurgeDuringChange_WaitsForChange() throws Exception {
+    Book book = createBook(3, 10, false, false);
+    CountDownLatch changeStarted = new CountDownLatch(1);
+    CountDownLatch finishChange = new CountDownLatch(1);
+    when(repository.findById(book.getIsbn()))
+        .thenAnswer(
+            invocation -> {
+              changeStarted.countDown();
+              finishChange.await();
+              return Optional.empty();
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> change = executor.submit(() -> service.addToFavourite(book));
+      assertTrue(changeStarted.await(5, TimeUnit.SECONDS));
+      Future<?> purge = executor.submit(() -> service.purgeDatabase());
+
+      verify(repository, after(200).never()).deleteAllInBulk();
+      finishChange.countDown();
+      change.get(5, TimeUnit.SECONDS);
+      purge.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    InOrder inOrder = inOrder(repository);
+    inOrder.verify(repository).save(book);
+    inOrder.verify(repository).deleteAllInBulk();
+  }
+
+  /**
+   * Checks if a change made while a purge runs waits for it, so the purge cannot delete it
+   *
+   * @throws Exception if the change or the purge fails
+   */
+  @Test
+  void BookwormService_ChangeDuringPurge_WaitsForPurge() throws Exception {
+    Book book = createBook(3, 10, false, false);
+    CountDownLatch purgeStarted = new CountDownLatch(1);
+    CountDownLatch finishPurge = new CountDownLatch(1);
+    when(repository.deleteAllInBulk())
+        .thenAnswer(
+            invocation -> {
+              purgeStarted.countDown();
+              finishPurge.await();
+              return 1;
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> purge = executor.submit(() -> service.purgeDatabase());
+      assertTrue(purgeStarted.await(5, TimeUnit.SECONDS));
+      Future<?> change = executor.submit(() -> service.addAllToFavourite(List.of(book)));
+
+      verify(repository, after(200).never()).findAllById(anyList());
+      finishPurge.countDown();
+      purge.get(5, TimeUnit.SECONDS);
+      change.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    InOrder inOrder = inOrder(repository);
+    inOrder.verify(repository).deleteAllInBulk();
+    inOrder.verify(repository).saveAll(anyList());
+  }
+
+  /** Checks if an asynchronous purge can be polled by its job id once it has finished */
+  @Test
+  void BookwormService_PurgeDatabaseAsync_ReportsSucceededJob() {
+    when(repository.deleteAllInBulk()).thenReturn(2);
+
+    PurgeJob job = service.purgeDatabaseAsync();
+    PurgeJob polledJob = service.getPurgeJob(job.id());
+
+    assertEquals(PurgeJob.Status.SUCCEEDED, polledJob.status());
+    assertEquals(2, polledJob.deletedBooks());
+    assertThrows(PurgeJobNotFoundException.class, () -> service.getPurgeJob("no-such-job"));
   }
 
   /** Checks if updateRatingAndPrice() updates already existing book in the repository */
@@ -167,6 +794,13 @@ public class BookwormServiceTest {
     service.addToFavourite(book);
 
     Mockito.verify(repository, times(1)).save(book);
+    assertEquals(
+        1,
+        meterRegistry
+            .get(BookwormMetrics.FAVOURITE_WRITES)
+            .tag("operation", "add")
+            .counter()
+            .count());
   }
 
   /** Checks if addToFavourite() saves new book if book does not exist in the database */
@@ -179,4 +813,148 @@ public class BookwormServiceTest {
 
     Mockito.verify(repository, times(1)).save(book);
   }
+
+  /** Checks if bulk add loads stored books in one query and saves every change at once */
+  @Test
+  void BookwormService_AddAllToFavourite_ReturnsOutcomePerBook() {
+    Book storedBook = createBook(3, 10, false, true);
+    Book newBook = createBook(4, 12, false, false);
+    newBook.setIsbn("456");
+    Book invalidBook = createBook(4, 12, false, false);
+    invalidBook.setIsbn(null);
+    when(repository.findAllById(anyList())).thenReturn(List.of(storedBook));
+
+    List<BulkOutcome> outcomes =
+        service.addAllToFavourite(List.of(createBook(3, 10, false, false), newBook, invalidBook));
+
+    assertEquals(
+        List.of(
+            new BulkOutcome("123", Status.MARKED_FAVOURITE),
+            new BulkOutcome("456", Status.ADDED),
+            new BulkOutcome(null, Status.INVALID)),
+        outcomes);
+    assertTrue(storedBook.isFavourite());
+    assertTrue(newBook.isFavourite());
+    Mockito.verify(repository, times(1)).findAllById(List.of("123", "456"));
+    Mockito.verify(repository, times(1)).saveAll(List.of(storedBook, newBook));
+    Mockito.verify(repository, never()).findById(anyString());
+  }
+
+  /** Checks if bulk remove deletes, unmarks or skips every book like the single remove */
+  @Test
+  void BookwormService_RemoveAllFromFavourite_ReturnsOutcomePerBook() {
+    Book unchangedBook = createBook(3, 10, true, false);
+    Book changedBook = createBook(1, 24, true, true);
+    changedBook.setIsbn("456");
+    Book missingBook = createBook(1, 24, true, true);
+    missingBook.setIsbn("789");
+    when(repository.findAllById(anyList())).thenReturn(List.of(unchangedBook, changedBook));
+
+    List<BulkOutcome> outcomes =
+        service.removeAllFromFavourite(List.of(unchangedBook, changedBook, missingBook));
+
+    assertEquals(
+        List.of(
+            new BulkOutcome("123", Status.REMOVED),
+            new BulkOutcome("456", Status.UNMARKED_FAVOURITE),
+            new BulkOutcome("789", Status.NOT_FOUND)),
+        outcomes);
+    assertFalse(changedBook.isFavourite());
+    Mockito.verify(repository, times(1)).deleteAll(List.of(unchangedBook));
+    Mockito.verify(repository, times(1)).saveAll(List.of(changedBook));
+  }
+
+  /** Checks if bulk update updates stored books and creates the others */
+  @Test
+  void BookwormService_UpdateAllRatingsAndPrices_ReturnsOutcomePerBook() {
+    Book storedBook = createBook(3, 10, true, false);
+    Book update = createBook(5, 30, false, false);
+    Book newBook = createBook(2, 8, false, false);
+    newBook.setIsbn("456");
+    when(repository.findAllById(anyList())).thenReturn(List.of(storedBook));
+
+    List<BulkOutcome> outcomes = service.updateAllRatingsAndPrices(List.of(update, newBook));
+
+    assertEquals(
+        List.of(new BulkOutcome("123", Status.UPDATED), new BulkOutcome("456", Status.CREATED)),
+        outcomes);
+    assertEquals(5, storedBook.getRating());
+    assertEquals(30, storedBook.getPrice());
+    assertTrue(storedBook.isRatingPriceChanged());
+    assertTrue(storedBook.isFavourite());
+    assertTrue(newBook.isRatingPriceChanged());
+    Mockito.verify(repository, times(1)).saveAll(List.of(storedBook, newBook));
+  }
+
+  /**
+   * Makes the mocked RestTemplate stream the stored New York Times API response to the response
+   * extractor
+   */
+  private void mockNYTResponse() {
+    mockNYTResponse(EXTERNAL_RESPONSE);
+  }
+
+  /**
+   * Makes the mocked RestTemplate stream a stored New York Times API response to the response
+   * extractor
+   *
+   * @param responseFile stored response
+   */
+  private void mockNYTResponse(String responseFile) {
+    when(configuration.getNytBaseUrl()).thenReturn("https://api.nytimes.com");
+    when(restTemplate.<Set<Book>>execute(any(URI.class), eq(HttpMethod.GET), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              ResponseExtractor<Set<Book>> extractor = invocation.getArgument(3);
+              return extractor.extractData(
+                  new MockClientHttpResponse(
+                      Files.newInputStream(Paths.get(responseFile)),
+                      HttpStatus.OK));
+            });
+  }
+
+  /**
+   * Makes the snapshot cache load on a thread of its own, as it does on the NYT executor
+   *
+   * @return latch released once the load is done
+   */
+  private CountDownLatch loadSnapshotAsynchronously() {
+    CountDownLatch loaded = new CountDownLatch(1);
+    doAnswer(
+            invocation ->
+                CompletableFuture.supplyAsync(
+                        () -> snapshotCache.get(invocation.getArgument(0)))
+                    .whenComplete((snapshot, e) -> loaded.countDown()))
+        .when(snapshotCache)
+        .getAsync(any());
+    return loaded;
+  }
+
+  /**
+   * @param latch latch to wait for
+   * @return true if the latch was released within five seconds
+   */
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * @param from number of the first favourite
+   * @param count number of favourites
+   * @return favourites with ISBNs in ascending order
+   */
+  private static List<FavouriteBook> favourites(int from, int count) {
+    List<FavouriteBook> favourites = new ArrayList<>();
+    for (int i = from; i < from + count; i++) {
+      Book book = createBook(3, 10, true, false);
+      book.setIsbn(String.format("%013d", i));
+      favourites.add(FavouriteBook.of(book));
+    }
+    return favourites;
+  }
 }
@@ -0,0 +1,204 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static com.mihirsoni.radical.bookworm.utils.TestUtils.createBook;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.*;
+
+import com.mihirsoni.radical.bookworm.dto.FavouriteBook;
+import com.mihirsoni.radical.bookworm.models.Book;
+import com.mihirsoni.radical.bookworm.repository.BookwormRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+@ExtendWith(MockitoExtension.class)
+public class FavouriteWriteBehindTest {
+
+  @Mock private BookwormRepository repository;
+
+  /** Checks if successive changes of a book are coalesced and stored with one write */
+  @Test
+  void FavouriteWriteBehind_SuccessiveChanges_StoresLatestStateOnce() {
+    FavouriteWriteBehind writeBehind = writeBehind(100, Runnable::run);
+    when(repository.findAllById(anySet())).thenReturn(List.of());
+
+    writeBehind.enqueue(PendingWrite.ratingAndPrice(createBook(2, 10, false, false)));
+    writeBehind.enqueue(PendingWrite.ratingAndPrice(createBook(4, 15, false, false)));
+    writeBehind.enqueue(PendingWrite.favourite(createBook(4, 15, false, false), true));
+    writeBehind.flush();
+
+    List<Book> saved = captureSaved();
+    assertEquals(1, saved.size());
+    assertEquals(4, saved.get(0).getRating());
+    assertEquals(15, saved.get(0).getPrice());
+    assertTrue(saved.get(0).isFavourite());
+    assertTrue(saved.get(0).isRatingPriceChanged());
+    assertTrue(writeBehind.pending().isEmpty());
+    verify(repository, times(1)).findAllById(anySet());
+  }
+
+  /** Checks if removing a favourite whose rating/price never changed deletes it on flush */
+  @Test
+  void FavouriteWriteBehind_RemoveUnchangedFavourite_DeletesOnFlush() {
+    FavouriteWriteBehind writeBehind = writeBehind(100, Runnable::run);
+    Book storedBook = createBook(3, 10, true, false);
+    when(repository.findAllById(anySet())).thenReturn(List.of(storedBook));
+
+    writeBehind.enqueue(PendingWrite.favourite(createBook(3, 10, true, false), false));
+    writeBehind.flush();
+
+    verify(repository, times(1)).deleteAll(List.of(storedBook));
+    assertTrue(captureSaved().isEmpty());
+  }
+
+  /** Checks if the favourite list shows pending changes before they are flushed */
+  @Test
+  void FavouriteWriteBehind_OverlayFavourites_AppliesPendingChanges() {
+    FavouriteWriteBehind writeBehind = writeBehind(100, Runnable::run);
+    Book storedFavourite = createBook(3, 10, true, false);
+    Book newFavourite = createBook(4, 12, false, false);
+    newFavourite.setIsbn("456");
+    when(repository.findAllById(anySet())).thenReturn(List.of(storedFavourite));
+
+    writeBehind.enqueue(PendingWrite.favourite(createBook(3, 10, true, false), false));
+    writeBehind.enqueue(PendingWrite.favourite(newFavourite, true));
+    List<FavouriteBook> favourites =
+        writeBehind.overlayFavourites(List.of(FavouriteBook.of(storedFavourite)), "", 20);
+
+    assertEquals(List.of("456"), favourites.stream().map(FavouriteBook::isbn).toList());
+    assertTrue(storedFavourite.isFavourite());
+    verify(repository, never()).saveAll(anyList());
+  }
+
+  /** Checks if pending favourites only show on the page whose ISBN range they fall in */
+  @Test
+  void FavouriteWriteBehind_OverlayFavouritesPage_KeepsIsbnOrderAndLimit() {
+    FavouriteWriteBehind writeBehind = writeBehind(100, Runnable::run);
+    Book beforeCursor = createBook(3, 10, false, false);
+    beforeCursor.setIsbn("100");
+    Book onPage = createBook(3, 10, false, false);
+    onPage.setIsbn("250");
+    when(repository.findAllById(anySet())).thenReturn(List.of());
+
+    writeBehind.enqueue(PendingWrite.favourite(beforeCursor, true));
+    writeBehind.enqueue(PendingWrite.favourite(onPage, true));
+    Book stored1 = createBook(3, 10, true, false);
+    stored1.setIsbn("200");
+    Book stored2 = createBook(3, 10, true, false);
+    stored2.setIsbn("300");
+    List<FavouriteBook> favourites =
+        writeBehind.overlayFavourites(
+            List.of(FavouriteBook.of(stored1), FavouriteBook.of(stored2)), "150", 2);
+
+    assertEquals(List.of("200", "250"), favourites.stream().map(FavouriteBook::isbn).toList());
+  }
+
+  /** Checks if a failed flush keeps the changes queued */
+  @Test
+  void FavouriteWriteBehind_FailedFlush_KeepsChangesPending() {
+    FavouriteWriteBehind writeBehind = writeBehind(100, Runnable::run);
+    when(repository.findAllById(anySet())).thenReturn(List.of());
+    when(repository.saveAll(anyList())).thenThrow(new IllegalStateException("Database is down"));
+
+    writeBehind.enqueue(PendingWrite.favourite(createBook(3, 10, false, false), true));
+
+    assertThrows(IllegalStateException.class, writeBehind::flush);
+    assertTrue(writeBehind.pending().get("123").favourite());
+  }
+
+  /**
+   * Checks if changes being flushed stay visible until their transaction has committed, and
+   * changes made meanwhile are stored by a later batch
+   *
+   * @throws Exception if interrupted while waiting for the flush
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void FavouriteWriteBehind_ReadDuringFlush_SeesChangesUntilCommitted() throws Exception {
+    CountDownLatch written = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    TransactionOperations blockedCommit =
+        new TransactionOperations() {
+          @Override
+          public <T> T execute(TransactionCallback<T> action) {
+            T result = action.doInTransaction(null);
+            written.countDown();
+            try {
+              commit.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return result;
+          }
+        };
+    FavouriteWriteBehind writeBehind =
+        new FavouriteWriteBehind(true, 100, repository, blockedCommit, Runnable::run);
+    when(repository.findAllById(anySet())).thenReturn(List.of());
+    writeBehind.enqueue(PendingWrite.favourite(createBook(3, 10, false, false), true));
+
+    Thread flush = new Thread(writeBehind::flush);
+    flush.start();
+    assertTrue(written.await(5, TimeUnit.SECONDS));
+    List<FavouriteBook> favourites = writeBehind.overlayFavourites(List.of(), "", 20);
+    assertEquals(List.of("123"), favourites.stream().map(FavouriteBook::isbn).toList());
+    assertTrue(writeBehind.pending().containsKey("123"));
+    Book other = createBook(3, 10, false, false);
+    other.setIsbn("456");
+    writeBehind.enqueue(PendingWrite.favourite(other, true));
+    writeBehind.enqueue(PendingWrite.ratingAndPrice(createBook(5, 20, false, false)));
+    commit.countDown();
+    flush.join(5000);
+
+    assertFalse(flush.isAlive());
+    assertTrue(writeBehind.pending().isEmpty());
+    ArgumentCaptor<List<Book>> captor = ArgumentCaptor.forClass(List.class);
+    verify(repository, times(2)).saveAll(captor.capture());
+    Map<String, Book> lastBatch =
+        captor.getValue().stream().collect(Collectors.toMap(Book::getIsbn, book -> book));
+    assertEquals(Set.of("123", "456"), lastBatch.keySet());
+    assertEquals(5, lastBatch.get("123").getRating());
+    assertTrue(lastBatch.get("123").isFavourite());
+  }
+
+  /** Checks if reaching the batch size schedules one flush */
+  @Test
+  void FavouriteWriteBehind_BatchSizeReached_SchedulesFlush() {
+    List<Runnable> scheduled = new ArrayList<>();
+    FavouriteWriteBehind writeBehind = writeBehind(2, scheduled::add);
+    Book book = createBook(3, 10, false, false);
+    book.setIsbn("456");
+
+    writeBehind.enqueue(PendingWrite.favourite(createBook(3, 10, false, false), true));
+    assertTrue(scheduled.isEmpty());
+    writeBehind.enqueue(PendingWrite.favourite(book, true));
+    writeBehind.enqueue(PendingWrite.favourite(book, false));
+
+    assertEquals(1, scheduled.size());
+  }
+
+  private FavouriteWriteBehind writeBehind(int batchSize, Executor executor) {
+    return new FavouriteWriteBehind(
+        true, batchSize, repository, TransactionOperations.withoutTransaction(), executor);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Book> captureSaved() {
+    ArgumentCaptor<List<Book>> captor = ArgumentCaptor.forClass(List.class);
+    verify(repository).saveAll(captor.capture());
+    return captor.getValue();
+  }
+}
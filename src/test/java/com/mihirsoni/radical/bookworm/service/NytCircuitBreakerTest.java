@@ -0,0 +1,202 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+public class NytCircuitBreakerTest {
+  private final MutableClock clock = new MutableClock();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final NytCircuitBreaker circuitBreaker =
+      new NytCircuitBreaker(Duration.ofSeconds(30), Duration.ofMinutes(10), 5, 500, clock);
+
+  /** Checks if a 429 opens the circuit for as long as Retry-After asks */
+  @Test
+  void NytCircuitBreaker_RateLimited_OpensUntilRetryAfter() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, "120");
+
+    assertThrows(
+        HttpClientErrorException.class,
+        () ->
+            circuitBreaker.call(
+                () -> {
+                  throw HttpClientErrorException.create(
+                      HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, null, null);
+                }));
+
+    clock.advance(Duration.ofSeconds(119));
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+    assertEquals(0, calls.get());
+
+    clock.advance(Duration.ofSeconds(1));
+    assertEquals(1, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if 429 responses and calls rejected by the client-side quota are counted */
+  @Test
+  void NytCircuitBreaker_RateLimitHits_AreCounted() {
+    failWith(HttpStatus.TOO_MANY_REQUESTS);
+    clock.advance(Duration.ofMinutes(1));
+    for (int i = 0; i < 5; i++) {
+      circuitBreaker.call(calls::incrementAndGet);
+    }
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+
+    assertEquals(1, circuitBreaker.getRateLimitedCount());
+    assertEquals(1, circuitBreaker.getQuotaRejectedCount());
+  }
+
+  /** Checks if repeated 5xx failures back off exponentially */
+  @Test
+  void NytCircuitBreaker_RepeatedServerErrors_BacksOffExponentially() {
+    failWith(HttpStatus.SERVICE_UNAVAILABLE);
+    clock.advance(Duration.ofSeconds(30));
+    failWith(HttpStatus.SERVICE_UNAVAILABLE);
+
+    clock.advance(Duration.ofSeconds(59));
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+
+    clock.advance(Duration.ofSeconds(1));
+    assertEquals(1, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if client errors other than 429 leave the circuit closed */
+  @Test
+  void NytCircuitBreaker_NotFound_StaysClosed() {
+    failWith(HttpStatus.NOT_FOUND);
+
+    assertEquals(1, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if calls beyond the per-minute quota are not sent until the bucket refills */
+  @Test
+  void NytCircuitBreaker_QuotaSpent_FailsFastUntilRefilled() {
+    for (int i = 0; i < 5; i++) {
+      circuitBreaker.call(calls::incrementAndGet);
+    }
+
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+    assertEquals(5, calls.get());
+
+    clock.advance(Duration.ofSeconds(12));
+    assertEquals(6, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if a response reporting the daily quota as spent stops further calls */
+  @Test
+  void NytCircuitBreaker_DailyQuotaHeader_StopsCalls() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(NytCircuitBreaker.REMAINING_DAY, "0");
+
+    circuitBreaker.recordQuotaHeaders(headers);
+    clock.advance(Duration.ofMinutes(1));
+
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if a call rejected by the per-day quota leaves the per-minute quota untouched */
+  @Test
+  void NytCircuitBreaker_DailyQuotaSpent_KeepsMinuteQuota() {
+    NytCircuitBreaker circuitBreaker =
+        new NytCircuitBreaker(
+            Duration.ofSeconds(30), Duration.ofMinutes(10), 5, 100_000_000, clock);
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(NytCircuitBreaker.REMAINING_DAY, "0");
+    circuitBreaker.recordQuotaHeaders(headers);
+    for (int i = 0; i < 5; i++) {
+      assertThrows(
+          NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+    }
+
+    clock.advance(Duration.ofSeconds(1));
+    for (int i = 0; i < 5; i++) {
+      circuitBreaker.call(calls::incrementAndGet);
+    }
+    assertEquals(5, calls.get());
+  }
+
+  /** Checks if a trial call rejected by the quota leaves the circuit open for the next caller */
+  @Test
+  void NytCircuitBreaker_TrialCallWithoutQuota_StaysOpen() {
+    failWith(HttpStatus.SERVICE_UNAVAILABLE);
+    clock.advance(Duration.ofSeconds(30));
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(NytCircuitBreaker.REMAINING_MINUTE, "0");
+    circuitBreaker.recordQuotaHeaders(headers);
+
+    assertThrows(
+        NytApiUnavailableException.class, () -> circuitBreaker.call(calls::incrementAndGet));
+
+    clock.advance(Duration.ofSeconds(12));
+    assertEquals(1, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  /** Checks if a response that cannot be parsed does not open the circuit */
+  @Test
+  void NytCircuitBreaker_UnparseableResponse_StaysClosed() {
+    assertThrows(
+        ResourceAccessException.class,
+        () ->
+            circuitBreaker.call(
+                () -> {
+                  throw new ResourceAccessException(
+                      "I/O error", new JsonParseException(null, "Unexpected end of input"));
+                }));
+
+    assertEquals(1, circuitBreaker.call(calls::incrementAndGet));
+  }
+
+  private void failWith(HttpStatus status) {
+    assertThrows(
+        RuntimeException.class,
+        () ->
+            circuitBreaker.call(
+                () -> {
+                  throw status.is5xxServerError()
+                      ? HttpServerErrorException.create(status, "", new HttpHeaders(), null, null)
+                      : HttpClientErrorException.create(status, "", new HttpHeaders(), null, null);
+                }));
+  }
+
+  /** Clock that only moves when told to */
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.parse("2024-05-26T00:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
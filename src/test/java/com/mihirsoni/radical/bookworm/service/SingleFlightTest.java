@@ -0,0 +1,91 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+  /**
+   * Checks if concurrent callers of the same key share one load
+   *
+   * @throws Exception if a caller fails or times out
+   */
+  @Test
+  void SingleFlight_ConcurrentCallers_LoadOnce() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loadStarted = new CountDownLatch(1);
+    CountDownLatch releaseLoad = new CountDownLatch(1);
+    int callers = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      results.add(
+          executor.submit(
+              () ->
+                  singleFlight.execute(
+                      "key",
+                      () -> {
+                        loads.incrementAndGet();
+                        loadStarted.countDown();
+                        awaitQuietly(releaseLoad);
+                        return 42;
+                      })));
+      assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+      for (int i = 1; i < callers; i++) {
+        results.add(executor.submit(() -> singleFlight.execute("key", loads::incrementAndGet)));
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (singleFlight.getCoalescedCount() < callers - 1 && System.nanoTime() < deadline) {
+        Thread.onSpinWait();
+      }
+      releaseLoad.countDown();
+
+      for (Future<Integer> result : results) {
+        assertEquals(42, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, loads.get());
+    assertEquals(1, singleFlight.getFlightCount());
+    assertEquals(callers - 1, singleFlight.getCoalescedCount());
+    assertFalse(singleFlight.isInFlight("key"));
+  }
+
+  /** Checks if a failed load is not remembered and the next call loads again */
+  @Test
+  void SingleFlight_FailedLoad_ThrowsAndLoadsAgain() {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            singleFlight.execute(
+                "key",
+                () -> {
+                  throw new IllegalStateException("429 Too Many Requests");
+                }));
+
+    assertEquals(7, singleFlight.execute("key", () -> 7));
+    assertEquals(2, singleFlight.getFlightCount());
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.mihirsoni.radical.bookworm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+public class StripedLocksTest {
+
+  /**
+   * Checks if keys of different stripes can be locked at the same time while the same key blocks
+   *
+   * @throws Exception if a thread fails
+   */
+  @Test
+  void StripedLocks_DifferentKeys_RunInParallel() throws Exception {
+    StripedLocks locks = new StripedLocks(256);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      executor.submit(
+          () ->
+              locks.withLock(
+                  "9780316403283",
+                  () -> {
+                    held.countDown();
+                    awaitQuietly(release);
+                  }));
+      assertTrue(held.await(5, TimeUnit.SECONDS));
+
+      Future<?> otherKey = executor.submit(() -> locks.withLock("9780593798430", () -> {}));
+      otherKey.get(5, TimeUnit.SECONDS);
+
+      Future<?> sameKey =
+          executor.submit(() -> locks.withLocks(List.of("9780316403283"), () -> null));
+      assertThrows(TimeoutException.class, () -> sameKey.get(200, TimeUnit.MILLISECONDS));
+      release.countDown();
+      sameKey.get(5, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}